@@ -0,0 +1,93 @@
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * BenchmarkFixtures builds what the JMH benchmarks in pathfinder.jmh
+ * measure.  The sources live in the default package, which code in a named
+ * package cannot refer to (and JMH will not generate benchmarks in the
+ * default package), so the benchmarks call these methods reflectively during
+ * setup and only touch the JDK interfaces they return while measuring.
+ *
+ * A map is a file in the heightmaps directory (the heightmaps system
+ * property, else ./heightmaps or ../heightmaps) or "fractal:N" for an N-by-N
+ * TerrainEditor fractal with a fixed seed.
+ */
+public class BenchmarkFixtures {
+    private static boolean quiet = false;
+
+    // Pathfinder prints a line per path found; send StdOut to nowhere instead of the benchmark log
+    private static synchronized void quiet() {
+        if(quiet) return;
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        StdOut.print("");     // StdOut keeps the stream it sees first
+        System.setOut(out);
+        quiet = true;
+    }
+
+    static String resolve(String map) {
+        String dir = System.getProperty("heightmaps");
+        if(dir == null) dir = new File("heightmaps").isDirectory() ? "heightmaps" : "../heightmaps";
+        return new File(dir, map).getPath();
+    }
+
+    static Terrain terrain(String map) {
+        if(map.startsWith("fractal:")) {
+            Terrain terrain = new Terrain(Integer.parseInt(map.substring(8)));
+            TerrainEditor.setFractalHeights(terrain, 42);
+            TerrainEditor.clampHeights(terrain);
+            return terrain;
+        }
+        return new Terrain(resolve(map));
+    }
+
+    // each call answers the next of count random queries on map and returns the search size
+    public static IntSupplier search(String map, float heuristic, int count, long seed) {
+        quiet();
+        Terrain terrain = terrain(map);
+        int N = terrain.getN();
+        Random random = new Random(seed);
+        Coord[] starts = new Coord[count], ends = new Coord[count];
+        for(int k = 0; k < count; k++) {
+            starts[k] = new Coord(random.nextInt(N), random.nextInt(N));
+            ends[k] = new Coord(random.nextInt(N), random.nextInt(N));
+        }
+        Pathfinder pf = new Pathfinder(terrain);
+        pf.setHeuristic(heuristic);
+        return new IntSupplier() {
+            private int next = 0;
+            public int getAsInt() {
+                pf.resetPath();
+                pf.setPathStart(starts[next]);
+                pf.setPathEnd(ends[next]);
+                next = (next + 1) % count;
+                pf.computePath();
+                return pf.getSearchSize();
+            }
+        };
+    }
+
+    // each call loads map from disk
+    public static Supplier<Object> load(String map) {
+        String file = resolve(map);
+        return () -> new Terrain(file);
+    }
+
+    // each call draws one frame of map with a path across it; needs a display
+    public static Runnable frame(String map, float heuristic) {
+        quiet();
+        Terrain terrain = terrain(map);
+        int N = terrain.getN();
+        Pathfinder pf = new Pathfinder(terrain);
+        pf.setHeuristic(heuristic);
+        pf.setPathStart(new Coord(N / 8, N / 8));
+        pf.setPathEnd(new Coord(N - 1 - N / 8, N - 1 - N / 8));
+        pf.computePath();
+        StdDraw.show(0);      // draw off screen; show() is not part of the frame
+        return () -> PathfinderVisualizer.draw(terrain, pf, null, N);
+    }
+}
@@ -0,0 +1,43 @@
+package pathfinder.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Frame time of PathfinderVisualizer.draw (terrain, searched cells and a
+ * path) into StdDraw's off-screen buffer.  StdDraw opens a window, so this
+ * needs a display; on a headless machine the setup fails and JMH moves on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DrawBenchmark {
+    @Param({ "maze232_0.png.emap", "usa128.png.emap", "usa1024.png.emap" })
+    public String map;
+
+    private Runnable frame;
+
+    @Setup
+    public void setUp() {
+        frame = Fixtures.create("frame", map, 1.0f);
+    }
+
+    @Benchmark
+    public void draw() {
+        frame.run();
+    }
+}
@@ -0,0 +1,30 @@
+package pathfinder.jmh;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Fixtures calls the static factories of the default-package
+ * BenchmarkFixtures class, which benchmark code cannot name directly.
+ */
+final class Fixtures {
+    private Fixtures() { }
+
+    @SuppressWarnings("unchecked")
+    static <T> T create(String name, Object... args) {
+        try {
+            Class<?> fixtures = Class.forName("BenchmarkFixtures");
+            for(Method m : fixtures.getMethods()) {
+                if(m.getName().equals(name) && m.getParameterCount() == args.length) return (T) m.invoke(null, args);
+            }
+            throw new IllegalArgumentException("no fixture " + name + " with " + args.length + " arguments");
+        } catch(InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if(cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        } catch(ReflectiveOperationException e) {
+            throw new IllegalStateException("cannot reach BenchmarkFixtures", e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package pathfinder.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Pathfinder.computePath throughput on TerrainEditor fractal maps of
+ * increasing size (fixed seed), to see how the searches scale with N.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FractalSearchBenchmark {
+    @Param({ "128", "256", "512", "1024", "2048" })
+    public int n;
+
+    @Param({ "0", "1", "2", "128" })
+    public float heuristic;
+
+    @Param({ "16" })
+    public int queries;
+
+    private IntSupplier search;
+
+    @Setup
+    public void setUp() {
+        search = Fixtures.create("search", "fractal:" + n, heuristic, queries, 1L);
+    }
+
+    @Benchmark
+    public int computePath() {
+        return search.getAsInt();
+    }
+}
@@ -0,0 +1,51 @@
+package pathfinder.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Pathfinder.computePath throughput on the bundled heightmaps, cycling
+ * through a fixed set of random queries.  Run with -prof gc for the
+ * allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    @Param({ "maze32_0.png.emap", "maze232_0.png.emap", "mazeAB.png.emap",
+             "usa128.png.emap", "usa256.png.emap", "usa1024.png.emap" })
+    public String map;
+
+    @Param({ "0", "1", "2", "128" })
+    public float heuristic;
+
+    @Param({ "16" })
+    public int queries;
+
+    private IntSupplier search;
+
+    @Setup
+    public void setUp() {
+        search = Fixtures.create("search", map, heuristic, queries, 1L);
+    }
+
+    @Benchmark
+    public int computePath() {
+        return search.getAsInt();
+    }
+}
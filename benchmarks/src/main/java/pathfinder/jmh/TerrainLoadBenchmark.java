@@ -0,0 +1,43 @@
+package pathfinder.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time for Terrain(String) to load a bundled heightmap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TerrainLoadBenchmark {
+    @Param({ "maze32_0.png.emap", "maze232_0.png.emap", "mazeAB.png.emap",
+             "usa128.png.emap", "usa256.png.emap", "usa1024.png.emap" })
+    public String map;
+
+    private Supplier<Object> load;
+
+    @Setup
+    public void setUp() {
+        load = Fixtures.create("load", map);
+    }
+
+    @Benchmark
+    public Object load() {
+        return load.get();
+    }
+}
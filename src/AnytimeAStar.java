@@ -0,0 +1,249 @@
+import java.util.Arrays;
+
+/**
+ * AnytimeAStar is Anytime Repairing A* (ARA*).  Its first iteration is
+ * weighted A* with the straight-line heuristic inflated by a large weight,
+ * which finds a path quickly; each later iteration lowers the weight and
+ * repairs the previous search instead of starting over: g values and parent
+ * links are kept, and only the open cells and the cells whose g improved
+ * after they were expanded (the INCONS list) are queued again.
+ *
+ * After every iteration the best path so far and its suboptimality bound
+ * are published: its cost is at most bound times the optimal cost.  The
+ * bound is the smaller of the weight and the path cost divided by the
+ * lowest unweighted f = g + h over the queued cells, so it can reach 1 (the
+ * path is optimal) before the weight does.  Given a deadline, run stops
+ * there and the published path stays valid.
+ *
+ * begin's heur is the initial weight; values up to 1 select DEFAULT_WEIGHT,
+ * which is large because climbing costs tens of thousands of times more
+ * than a flat step.  The heuristic itself is the straight-line distance,
+ * which never overestimates.
+ */
+public class AnytimeAStar implements GridSearch {
+    public static final float DEFAULT_WEIGHT = 1048576;
+    private static final int SLICE = 256;        // expansions between deadline checks
+
+    private final Terrain terrain;
+    private final int N;
+    private final float[] g;
+    private final int[] parent;
+    private final int[] seen;         // query that last reached a cell (g and parent are valid)
+    private final int[] closed;       // iteration that last expanded a cell
+    private final int[] inconsMark;   // iteration that last put a cell on incons
+    private final CellMinHeap open;
+    private int[] incons = new int[64];
+    private int inconsCount = 0;
+    private int query = 0, iteration = 0;
+    private float[] edgeCosts;
+
+    private int startCell, endCell;
+    private float weight;
+    private int searchSize;
+    private int iterations;
+    private boolean done;
+    private long pushes, pops, peakOpenSize, heuristicEvaluations;
+    private int[] bestPath = new int[0];
+    private float bestCost = Float.POSITIVE_INFINITY;
+    private float bound = Float.POSITIVE_INFINITY;
+
+    public AnytimeAStar(Terrain terrain) {
+        this.terrain = terrain;
+        this.N = terrain.getN();
+        g = new float[N*N];
+        parent = new int[N*N];
+        seen = new int[N*N];
+        closed = new int[N*N];
+        inconsMark = new int[N*N];
+        open = new CellMinHeap(N*N);
+    }
+
+    public void begin(int startCell, int endCell, float heur) {
+        this.startCell = startCell;
+        this.endCell = endCell;
+        this.weight = heur > 1 ? heur : DEFAULT_WEIGHT;
+        edgeCosts = terrain.getEdgeCostTable();
+        if(++query == Integer.MAX_VALUE) {
+            Arrays.fill(seen, 0);
+            query = 1;
+        }
+        nextIteration();
+        open.clear();
+        searchSize = 0;
+        iterations = 0;
+        pushes = pops = peakOpenSize = heuristicEvaluations = 0;
+        done = false;
+        bestPath = new int[0];
+        bestCost = Float.POSITIVE_INFINITY;
+        bound = Float.POSITIVE_INFINITY;
+        reach(startCell, 0, -1);
+        push(startCell);
+    }
+
+    private void push(int cell) {
+        open.insertOrUpdate(cell, key(cell));
+        pushes++;
+        peakOpenSize = Math.max(peakOpenSize, open.size());
+    }
+
+    private int pop() {
+        pops++;
+        return open.delMin();
+    }
+
+    // a new iteration: nothing is closed or on incons yet
+    private void nextIteration() {
+        if(++iteration == Integer.MAX_VALUE) {
+            Arrays.fill(closed, 0);
+            Arrays.fill(inconsMark, 0);
+            iteration = 1;
+        }
+        inconsCount = 0;
+    }
+
+    private void reach(int cell, float cost, int from) {
+        if(seen[cell] != query) {
+            seen[cell] = query;
+            searchSize++;
+        }
+        g[cell] = cost;
+        parent[cell] = from;
+    }
+
+    private float cost(int cell) {
+        return seen[cell] == query ? g[cell] : Float.POSITIVE_INFINITY;
+    }
+
+    private float heuristic(int cell) {
+        heuristicEvaluations++;
+        return terrain.computeDistance(cell % N, cell / N, endCell % N, endCell / N);
+    }
+
+    private float key(int cell) {
+        return g[cell] + weight * heuristic(cell);
+    }
+
+    // the weight of the next iteration: halves the excess over 1
+    private static float lower(float w) {
+        float next = 1 + (w - 1) / 2;
+        return next < 1.05f ? 1 : next;
+    }
+
+    // expands at most maxExpansions cells; returns true once the path is known to be optimal
+    public boolean step(int maxExpansions) {
+        while(!done && maxExpansions-- > 0) {
+            // an iteration ends once no queued cell can beat the end's cost
+            if(open.isEmpty() || open.minKey() >= cost(endCell)) {
+                finishIteration();
+                continue;
+            }
+            int cell = pop();
+            closed[cell] = iteration;
+            int i = cell % N, j = cell / N;
+            float gc = g[cell];
+            for(int d = 0; d < 4; d++) {
+                int ni = i + Terrain.DIR_I[d], nj = j + Terrain.DIR_J[d];
+                if(ni < 0 || nj < 0 || ni >= N || nj >= N) continue;
+                int next = ni + nj * N;
+                float ng = gc + (edgeCosts != null ? edgeCosts[cell*4 + d] : terrain.computeTravelCost(i, j, ni, nj));
+                if(ng >= cost(next)) continue;
+                reach(next, ng, cell);
+                if(closed[next] != iteration) {
+                    push(next);
+                } else if(inconsMark[next] != iteration) {
+                    inconsMark[next] = iteration;
+                    if(inconsCount == incons.length) incons = Arrays.copyOf(incons, 2*inconsCount);
+                    incons[inconsCount++] = next;
+                }
+            }
+        }
+        return done;
+    }
+
+    // publishes the path, computes its bound, and starts the next iteration with a lower weight
+    private void finishIteration() {
+        iterations++;
+        // everything still queued: the open cells and incons
+        int[] queued = new int[open.size() + inconsCount];
+        int n = 0;
+        while(!open.isEmpty()) queued[n++] = pop();
+        for(int k = 0; k < inconsCount; k++) {
+            if(!open.contains(incons[k])) queued[n++] = incons[k];
+        }
+        float end = cost(endCell);
+        if(end != Float.POSITIVE_INFINITY) {
+            // g of the end can be stale (cells on incons improved since), so cost the traced path itself
+            int[] path = tracePath();
+            float cost = pathCost(path);
+            if(cost < bestCost) {
+                bestCost = cost;
+                bestPath = path;
+            }
+            float lowest = Float.POSITIVE_INFINITY;
+            for(int k = 0; k < n; k++) lowest = Math.min(lowest, g[queued[k]] + heuristic(queued[k]));
+            bound = Math.min(weight, lowest >= bestCost ? 1 : bestCost / lowest);
+        }
+        if(end == Float.POSITIVE_INFINITY || bound <= 1 || weight == 1) {
+            // no path at all, or the best one is optimal
+            if(end != Float.POSITIVE_INFINITY) bound = 1;
+            done = true;
+            return;
+        }
+        // a weight above the bound already met would only find paths no better than this one
+        weight = lower(Math.min(weight, bound));
+        nextIteration();
+        for(int k = 0; k < n; k++) push(queued[k]);
+    }
+
+    private int[] tracePath() {
+        int len = 0;
+        for(int c = endCell; c != -1; c = parent[c]) len++;
+        int[] path = new int[len];
+        for(int c = endCell; c != -1; c = parent[c]) path[--len] = c;
+        return path;
+    }
+
+    // summed from the start, as PackedPath does
+    private float pathCost(int[] path) {
+        float cost = 0;
+        for(int k = 1; k < path.length; k++) {
+            int a = path[k-1], b = path[k];
+            cost += terrain.computeTravelCost(a % N, a / N, b % N, b / N);
+        }
+        return cost;
+    }
+
+    // searches until the path is optimal or System.nanoTime() passes deadline; returns isDone
+    public boolean run(long deadline) {
+        while(!step(SLICE)) {
+            if(System.nanoTime() - deadline >= 0) break;
+        }
+        return done;
+    }
+
+    public boolean isDone() { return done; }
+
+    // true once some path has been published
+    public boolean isFound() { return bestPath.length > 0; }
+
+    public float getPathCost() { return isFound() ? bestCost : 0; }
+    public int[] extractPath() { return bestPath.clone(); }
+
+    // the published path costs at most this times the optimal cost (+inf before the first one)
+    public float getSuboptimalityBound() { return bound; }
+
+    // weight of the current iteration
+    public float getWeight() { return weight; }
+
+    // iterations finished so far in this query
+    public int getIterations() { return iterations; }
+
+    public int getSearchSize() { return searchSize; }
+
+    // over all iterations, counting the requeueing between them
+    public long getPushes() { return pushes; }
+    public long getPops() { return pops; }
+    public long getPeakOpenSize() { return peakOpenSize; }
+    public long getHeuristicEvaluations() { return heuristicEvaluations; }
+    public boolean wasSearched(int cell) { return seen[cell] == query; }
+}
@@ -0,0 +1,19 @@
+/**
+ * ArrayHeightStore wraps a caller's int[][] indexed [i][j], so that
+ * Terrain(int[][]) keeps sharing the array it was given.
+ */
+public class ArrayHeightStore extends HeightStore {
+    private final int[][] heights;
+
+    public ArrayHeightStore(int[][] heights) {
+        super(heights.length, Layout.ROW_MAJOR);
+        this.heights = heights;
+    }
+
+    public int get(int i, int j) { return heights[i][j]; }
+    public void set(int i, int j, int h) { heights[i][j] = h; }
+
+    public int getMinHeight() { return Integer.MIN_VALUE; }
+    public int getMaxHeight() { return Integer.MAX_VALUE; }
+    public int getBitDepth() { return 32; }
+}
@@ -0,0 +1,161 @@
+/**
+ * BidirectionalAStar searches from the start and from the end at once, each
+ * direction in its own SearchWorkspace.  It uses the average potential
+ * p(v) = heur * (dist(v,end) - dist(v,start)) / 2, with +p keying the forward
+ * search and -p the backward one.  Both directions then see the same reduced
+ * edge costs, and the search can stop as soon as the two smallest open keys
+ * add up to at least the best meeting cost found so far.  For heuristic
+ * values up to 1 the potential is consistent and the path is optimal.
+ *
+ * The reported path cost is summed from the start along the path, the same
+ * order GridAStar accumulates it in, so it matches walking the path.  It can
+ * differ from a unidirectional result in the last float bits, since on maps
+ * with very expensive climbs the backward half rounds differently.
+ */
+public class BidirectionalAStar implements GridSearch {
+    private final Terrain terrain;
+    private final SearchWorkspace fwd;
+    private final SearchWorkspace bwd;
+    private int startCell;
+    private int endCell;
+    private float heur;
+    private float[] edgeCosts;
+    private float best;
+    private int meet;
+    private int searchSize;
+    private boolean done;
+    private long pushes, pops, peakOpenSize, heuristicEvaluations;
+
+    public BidirectionalAStar(Terrain terrain, SearchWorkspace forward, SearchWorkspace backward) {
+        if(forward.getN() != terrain.getN() || backward.getN() != terrain.getN())
+            throw new IllegalArgumentException("workspace size does not match terrain");
+        this.terrain = terrain;
+        this.fwd = forward;
+        this.bwd = backward;
+    }
+
+    public void begin(int startCell, int endCell, float heur) {
+        this.startCell = startCell;
+        this.endCell = endCell;
+        this.heur = heur;
+        edgeCosts = terrain.getEdgeCostTable();
+        best = Float.POSITIVE_INFINITY;
+        meet = -1;
+        done = false;
+        pops = heuristicEvaluations = 0;
+
+        fwd.useBinaryHeap();
+        bwd.useBinaryHeap();
+        fwd.begin();
+        bwd.begin();
+        fwd.generate(startCell, 0, -1);
+        fwd.open().insertOrUpdate(startCell, potential(startCell));
+        bwd.generate(endCell, 0, -1);
+        bwd.open().insertOrUpdate(endCell, -potential(endCell));
+        pushes = peakOpenSize = 2;
+        searchSize = startCell == endCell ? 1 : 2;
+        if(startCell == endCell) {
+            best = 0;
+            meet = startCell;
+        }
+    }
+
+    // forward potential; the backward search uses its negation
+    private float potential(int cell) {
+        if(heur == 0) return 0;
+        heuristicEvaluations++;
+        int i = fwd.cellI(cell), j = fwd.cellJ(cell);
+        float toEnd = terrain.computeDistance(i, j, fwd.cellI(endCell), fwd.cellJ(endCell));
+        float toStart = terrain.computeDistance(i, j, fwd.cellI(startCell), fwd.cellJ(startCell));
+        return heur * (toEnd - toStart) * 0.5f;
+    }
+
+    public boolean step(int maxExpansions) {
+        final CellMinHeap openF = (CellMinHeap) fwd.open();
+        final CellMinHeap openR = (CellMinHeap) bwd.open();
+        while(!done && maxExpansions-- > 0) {
+            if(openF.isEmpty() || openR.isEmpty() || openF.minKey() + openR.minKey() >= best) {
+                done = true;
+                break;
+            }
+            if(openF.size() <= openR.size()) expand(fwd, bwd, openF, 1.0f);
+            else expand(bwd, fwd, openR, -1.0f);
+        }
+        return done;
+    }
+
+    private void expand(SearchWorkspace ws, SearchWorkspace other, CellMinHeap open, float sign) {
+        final int N = ws.getN();
+        int cell = open.delMin();
+        pops++;
+        ws.close(cell);
+        int i = ws.cellI(cell), j = ws.cellJ(cell);
+        float g = ws.getG(cell);
+        for(int d = 0; d < 4; d++) {
+            int ni = i + Terrain.DIR_I[d], nj = j + Terrain.DIR_J[d];
+            if(ni < 0 || nj < 0 || ni >= N || nj >= N) continue;
+            int next = ws.cell(ni, nj);
+            if(ws.isClosed(next)) continue;
+            float ng = g + (edgeCosts != null ? edgeCosts[cell*4 + d] : terrain.computeTravelCost(i, j, ni, nj));
+            boolean seen = ws.isGenerated(next);
+            if(seen && ng >= ws.getG(next)) continue;
+            if(!seen && !other.isGenerated(next)) searchSize++;
+            ws.generate(next, ng, cell);
+            open.insertOrUpdate(next, ng + sign * potential(next));
+            pushes++;
+            peakOpenSize = Math.max(peakOpenSize, open.size() + other.open().size());
+            if(other.isGenerated(next) && ng + other.getG(next) < best) {
+                best = ng + other.getG(next);
+                meet = next;
+            }
+        }
+    }
+
+    public void run() {
+        step(Integer.MAX_VALUE);
+    }
+
+    public boolean isDone() { return done; }
+    public boolean isFound() { return done && meet != -1; }
+    public float getPathCost() {
+        if(!isFound()) return best;
+        int[] path = extractPath();
+        float cost = 0;
+        for(int k = 1; k < path.length; k++) {
+            int a = path[k-1], b = path[k];
+            cost += terrain.computeTravelCost(fwd.cellI(a), fwd.cellJ(a), fwd.cellI(b), fwd.cellJ(b));
+        }
+        return cost;
+    }
+
+    public int[] extractPath() {
+        if(!isFound()) return new int[0];
+        int lenF = 0, lenR = 0;
+        for(int c = meet; c != -1; c = fwd.getParent(c)) lenF++;
+        for(int c = bwd.getParent(meet); c != -1; c = bwd.getParent(c)) lenR++;
+        int[] path = new int[lenF + lenR];
+        int k = lenF;
+        for(int c = meet; c != -1; c = fwd.getParent(c)) path[--k] = c;
+        k = lenF;
+        for(int c = bwd.getParent(meet); c != -1; c = bwd.getParent(c)) path[k++] = c;
+        return path;
+    }
+
+    public int getSearchSize() { return searchSize; }
+
+    // both directions together; a closed cell is never reopened, so nothing is re-expanded
+    public long getPushes() { return pushes; }
+    public long getPops() { return pops; }
+    public long getPeakOpenSize() { return peakOpenSize; }
+    public long getReExpansions() { return 0; }
+    public long getHeuristicEvaluations() { return heuristicEvaluations; }
+
+    public boolean wasSearched(int cell) {
+        return fwd.isGenerated(cell) || bwd.isGenerated(cell);
+    }
+
+    // true if the backward search, which started at the end, reached cell
+    public boolean wasSearchedBackward(int cell) {
+        return bwd.isGenerated(cell);
+    }
+}
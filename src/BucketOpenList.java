@@ -0,0 +1,175 @@
+import java.util.NoSuchElementException;
+
+/**
+ * BucketOpenList is a Dial-style bucket queue for monotone searches over
+ * quantized costs.  A key lands in bucket floor(key / width); a circular
+ * array covers the next `buckets` bucket numbers and keys beyond that window
+ * wait in an overflow heap.  Every time the window advances, the overflow
+ * entries it now covers move into their buckets, so none is passed over.
+ *
+ * Cells within one bucket come out in LIFO order, so extraction is exact only
+ * when all keys are multiples of width; otherwise a cell may come out up to
+ * width ahead of a slightly cheaper one.  As with RadixHeapOpenList, smaller
+ * keys leave stale entries behind, and keys below the current bucket are an
+ * error.
+ */
+public class BucketOpenList implements OpenList {
+    private final float width;
+    private final int[][] cells;
+    private final float[][] keys;
+    private final int[] count;
+    private int[] overCells = new int[16];    // binary min-heap on overKeys
+    private float[] overKeys = new float[16];
+    private int overCount = 0;
+    private int inBuckets = 0;         // entries (live or stale) in the circular window
+    private long cur = 0;              // bucket number of the current bucket
+
+    private final float[] current;     // key of the live entry of a queued cell
+    private final boolean[] queued;
+    private int size = 0;
+
+    public BucketOpenList(int capacity, float width, int buckets) {
+        if(!(width > 0)) throw new IllegalArgumentException("bucket width must be positive");
+        if(buckets < 1) throw new IllegalArgumentException("need at least one bucket");
+        this.width = width;
+        cells = new int[buckets][];
+        keys = new float[buckets][];
+        count = new int[buckets];
+        for(int b = 0; b < buckets; b++) {
+            cells[b] = new int[4];
+            keys[b] = new float[4];
+        }
+        current = new float[capacity];
+        queued = new boolean[capacity];
+    }
+
+    public float getWidth() { return width; }
+    public int getBuckets() { return cells.length; }
+
+    private long bucketNumber(float key) {
+        return (long)(key / width);
+    }
+
+    private void pushBucket(long q, int cell, float key) {
+        int b = (int)(q % cells.length);
+        if(count[b] == cells[b].length) {
+            cells[b] = java.util.Arrays.copyOf(cells[b], 2 * count[b]);
+            keys[b] = java.util.Arrays.copyOf(keys[b], 2 * count[b]);
+        }
+        cells[b][count[b]] = cell;
+        keys[b][count[b]] = key;
+        count[b]++;
+        inBuckets++;
+    }
+
+    private void pushOverflow(int cell, float key) {
+        if(overCount == overCells.length) {
+            overCells = java.util.Arrays.copyOf(overCells, 2 * overCount);
+            overKeys = java.util.Arrays.copyOf(overKeys, 2 * overCount);
+        }
+        int k = overCount++;
+        while(k > 0) {
+            int p = (k - 1) / 2;
+            if(overKeys[p] <= key) break;
+            overCells[k] = overCells[p];
+            overKeys[k] = overKeys[p];
+            k = p;
+        }
+        overCells[k] = cell;
+        overKeys[k] = key;
+    }
+
+    // removes the smallest overflow entry
+    private void popOverflow() {
+        int cell = overCells[--overCount];
+        float key = overKeys[overCount];
+        if(overCount == 0) return;
+        int k = 0;
+        while(true) {
+            int c = 2 * k + 1;
+            if(c >= overCount) break;
+            if(c + 1 < overCount && overKeys[c + 1] < overKeys[c]) c++;
+            if(overKeys[c] >= key) break;
+            overCells[k] = overCells[c];
+            overKeys[k] = overKeys[c];
+            k = c;
+        }
+        overCells[k] = cell;
+        overKeys[k] = key;
+    }
+
+    private void place(int cell, float key) {
+        long q = bucketNumber(key);
+        if(q < cur + cells.length) pushBucket(q, cell, key);
+        else pushOverflow(cell, key);
+    }
+
+    private boolean isLive(int cell, float key) {
+        return queued[cell] && current[cell] == key;
+    }
+
+    public void insertOrUpdate(int cell, float key) {
+        if(!(key >= 0)) throw new IllegalArgumentException("keys must be non-negative");
+        if(bucketNumber(key) < cur) throw new IllegalArgumentException("key is below the current bucket; the search is not monotone");
+        if(queued[cell]) {
+            if(current[cell] == key) return;
+        } else {
+            queued[cell] = true;
+            size++;
+        }
+        current[cell] = key;
+        place(cell, key);
+    }
+
+    public int delMin() {
+        if(size == 0) throw new NoSuchElementException("open list is empty");
+        while(true) {
+            if(inBuckets == 0) refill();
+            int b = (int)(cur % cells.length);
+            if(count[b] == 0) {
+                cur++;
+                pullIn();
+                continue;
+            }
+            int k = --count[b];
+            inBuckets--;
+            int cell = cells[b][k];
+            if(!isLive(cell, keys[b][k])) continue;
+            queued[cell] = false;
+            size--;
+            return cell;
+        }
+    }
+
+    // the window is empty: jump it to the smallest live overflow key and pull entries in
+    private void refill() {
+        while(!isLive(overCells[0], overKeys[0])) popOverflow();
+        cur = bucketNumber(overKeys[0]);
+        pullIn();
+    }
+
+    // moves the overflow entries the window now covers into it, dropping stale ones
+    private void pullIn() {
+        while(overCount > 0 && bucketNumber(overKeys[0]) < cur + cells.length) {
+            int cell = overCells[0];
+            float key = overKeys[0];
+            popOverflow();
+            if(isLive(cell, key)) pushBucket(bucketNumber(key), cell, key);
+        }
+    }
+
+    public boolean isEmpty() { return size == 0; }
+    public int size() { return size; }
+
+    public void clear() {
+        for(int b = 0; b < cells.length; b++) {
+            for(int k = 0; k < count[b]; k++) queued[cells[b][k]] = false;
+            count[b] = 0;
+        }
+        for(int k = 0; k < overCount; k++) queued[overCells[k]] = false;
+        overCount = 0;
+        inBuckets = 0;
+        cur = 0;
+        size = 0;
+    }
+}
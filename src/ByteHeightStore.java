@@ -0,0 +1,20 @@
+/**
+ * ByteHeightStore keeps heights in one flat byte[] as unsigned values in
+ * [0,255], the range png2emap.py writes and clampHeights enforces.  It uses
+ * a quarter of the memory of int storage.
+ */
+public class ByteHeightStore extends HeightStore {
+    private final byte[] heights;
+
+    public ByteHeightStore(int N, Layout layout) {
+        super(N, layout);
+        heights = new byte[capacity()];
+    }
+
+    public int get(int i, int j) { return heights[index(i, j)] & 0xff; }
+    public void set(int i, int j, int h) { heights[index(i, j)] = (byte) h; }
+
+    public int getMinHeight() { return 0; }
+    public int getMaxHeight() { return 255; }
+    public int getBitDepth() { return 8; }
+}
@@ -0,0 +1,108 @@
+/**
+ * CellMinHeap is an indexed binary min heap over flat cell indices
+ * (cell = i + j * N) with float keys.  Keys are stored per cell, so a
+ * comparison is a plain array load, and decreaseKey sifts the cell up in
+ * place instead of inserting a duplicate.
+ */
+public class CellMinHeap implements OpenList {
+    private final int[] heap;    // heap[1..size] holds cells
+    private final int[] pos;     // pos[cell] is index into heap, or 0 if not on heap
+    private final float[] key;   // key[cell] is the priority of cell
+    private int size;
+
+    public CellMinHeap(int capacity) {
+        heap = new int[capacity + 1];
+        pos = new int[capacity];
+        key = new float[capacity];
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public boolean contains(int cell) {
+        return pos[cell] != 0;
+    }
+
+    public float getKey(int cell) {
+        return key[cell];
+    }
+
+    public float minKey() {
+        return key[heap[1]];
+    }
+
+    public int min() {
+        return heap[1];
+    }
+
+    // inserts cell with given key, or updates its key if already on the heap
+    public void insertOrUpdate(int cell, float k) {
+        if(pos[cell] == 0) {
+            size++;
+            heap[size] = cell;
+            pos[cell] = size;
+            key[cell] = k;
+            swim(size);
+        } else if(k < key[cell]) {
+            key[cell] = k;
+            swim(pos[cell]);
+        } else if(k > key[cell]) {
+            key[cell] = k;
+            sink(pos[cell]);
+        }
+    }
+
+    public int delMin() {
+        int min = heap[1];
+        exch(1, size);
+        size--;
+        sink(1);
+        pos[min] = 0;
+        return min;
+    }
+
+    public void remove(int cell) {
+        int p = pos[cell];
+        if(p == 0) return;
+        exch(p, size);
+        size--;
+        if(p <= size) {
+            swim(p);
+            sink(p);
+        }
+        pos[cell] = 0;
+    }
+
+    // removes all cells; cost is proportional to the current size, not capacity
+    public void clear() {
+        for(int k = 1; k <= size; k++) pos[heap[k]] = 0;
+        size = 0;
+    }
+
+    private boolean less(int a, int b) {
+        return key[heap[a]] < key[heap[b]];
+    }
+
+    private void exch(int a, int b) {
+        int ca = heap[a], cb = heap[b];
+        heap[a] = cb; pos[cb] = a;
+        heap[b] = ca; pos[ca] = b;
+    }
+
+    private void swim(int k) {
+        while(k > 1 && less(k, k/2)) {
+            exch(k, k/2);
+            k = k/2;
+        }
+    }
+
+    private void sink(int k) {
+        while(2*k <= size) {
+            int j = 2*k;
+            if(j < size && less(j+1, j)) j++;
+            if(!less(j, k)) break;
+            exch(k, j);
+            k = j;
+        }
+    }
+}
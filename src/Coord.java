@@ -36,4 +36,6 @@ public final class Coord {
         if(this.j != that.j) return false;
         return true;
     }
+
+    public int hashCode() { return 31 * i + j; }
 }
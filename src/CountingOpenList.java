@@ -0,0 +1,53 @@
+/**
+ * CountingOpenList wraps the open list of an instrumented query and counts
+ * what passes through it: inserts and key updates (pushes), removals (pops),
+ * the largest size the list reached, and pops of cells that had already been
+ * popped earlier in the same query (re-expansions).  It only exists while a
+ * Pathfinder has SearchListeners, so uninstrumented searches never pay for
+ * the extra call.
+ */
+public class CountingOpenList implements OpenList {
+    private final int[] popped;     // stamp of the query that last popped a cell
+    private int stamp = 0;
+    private OpenList inner;
+    private long pushes, pops, peakSize, reExpansions;
+
+    public CountingOpenList(int cells) {
+        popped = new int[cells];
+    }
+
+    // starts counting a new query on top of inner
+    public void wrap(OpenList inner) {
+        this.inner = inner;
+        pushes = pops = peakSize = reExpansions = 0;
+        if(++stamp == Integer.MAX_VALUE) {
+            java.util.Arrays.fill(popped, 0);
+            stamp = 1;
+        }
+    }
+
+    public OpenList getInner() { return inner; }
+    public long getPushes() { return pushes; }
+    public long getPops() { return pops; }
+    public long getPeakSize() { return peakSize; }
+    public long getReExpansions() { return reExpansions; }
+
+    public void insertOrUpdate(int cell, float key) {
+        inner.insertOrUpdate(cell, key);
+        pushes++;
+        int size = inner.size();
+        if(size > peakSize) peakSize = size;
+    }
+
+    public int delMin() {
+        int cell = inner.delMin();
+        pops++;
+        if(popped[cell] == stamp) reExpansions++;
+        else popped[cell] = stamp;
+        return cell;
+    }
+
+    public boolean isEmpty() { return inner.isEmpty(); }
+    public int size() { return inner.size(); }
+    public void clear() { inner.clear(); }
+}
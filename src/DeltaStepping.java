@@ -0,0 +1,263 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * DeltaStepping computes the travel cost from one source cell to every cell
+ * of a Terrain (with the parent of each cell on a cheapest route) using
+ * parallel delta-stepping.  Cells are kept in buckets of width delta by
+ * tentative cost.  The lowest bucket is settled in rounds that relax its
+ * light edges (cost <= delta) in parallel, then the heavy edges of every cell
+ * it settled are relaxed in parallel, once.
+ *
+ * Each cell's tentative cost and parent are packed into one long (the float
+ * bits of a non-negative cost order like ints), so a relaxation is a single
+ * compare-and-set and the pair is never torn.  The costs are the same floats
+ * a sequential Dijkstra computes; parents can differ between equally cheap
+ * routes.
+ *
+ * On this terrain model flat steps cost 1 and any climb costs at least about
+ * 31623, so a delta of 1 makes climbs heavy; larger values put more work in
+ * each parallel round at the price of some repeated relaxations.
+ * DEFAULT_DELTA was the fastest on the bundled maps.
+ */
+public class DeltaStepping {
+    private static final long UNREACHED = pack(Float.POSITIVE_INFINITY, -1);
+    private static final int CHUNK = 1024;      // cells per parallel task
+    public static final float DEFAULT_DELTA = 1000;
+
+    private final Terrain terrain;
+    private final float delta;
+    private final ForkJoinPool pool;
+    private final int N;
+    private float[] edgeCosts;
+    private AtomicLongArray best;
+    private float[] dist;
+    private int[] parent;
+
+    public DeltaStepping(Terrain terrain) {
+        this(terrain, DEFAULT_DELTA);
+    }
+
+    public DeltaStepping(Terrain terrain, float delta) {
+        this(terrain, delta, ForkJoinPool.commonPool());
+    }
+
+    public DeltaStepping(Terrain terrain, float delta, ForkJoinPool pool) {
+        if(!(delta > 0)) throw new IllegalArgumentException("delta must be positive");
+        this.terrain = terrain;
+        this.delta = delta;
+        this.pool = pool;
+        this.N = terrain.getN();
+    }
+
+    public float getDelta() { return delta; }
+
+    private static long pack(float cost, int from) {
+        return ((long) Float.floatToRawIntBits(cost) << 32) | (from & 0xffffffffL);
+    }
+    private static float costOf(long packed) {
+        return Float.intBitsToFloat((int) (packed >>> 32));
+    }
+
+    private float edge(int cell, int d) {
+        if(edgeCosts != null) return edgeCosts[cell*4 + d];
+        int i = cell % N, j = cell / N;
+        int ni = i + Terrain.DIR_I[d], nj = j + Terrain.DIR_J[d];
+        if(ni < 0 || nj < 0 || ni >= N || nj >= N) return Float.POSITIVE_INFINITY;
+        return terrain.computeTravelCost(i, j, ni, nj);
+    }
+
+    // lowers the cost of cell to cost (via from); returns true if it was lowered
+    private boolean relax(int cell, float cost, int from) {
+        int bits = Float.floatToRawIntBits(cost);
+        long packed = pack(cost, from);
+        while(true) {
+            long cur = best.get(cell);
+            if(bits >= (int) (cur >>> 32)) return false;
+            if(best.compareAndSet(cell, cur, packed)) return true;
+        }
+    }
+
+    private long bucketOf(float cost) {
+        return (long) (cost / delta);
+    }
+
+    // relaxes the light (or heavy) edges of the given cells in parallel; returns the cells whose cost dropped
+    private int[] relaxAll(int[] cells, int count, boolean light) {
+        if(count <= CHUNK) return relaxRange(cells, 0, count, light);     // not worth a fork
+        int tasks = (count + CHUNK - 1) / CHUNK;
+        int[][] lowered = pool.submit(() -> IntStream.range(0, tasks).parallel()
+                .mapToObj(t -> relaxRange(cells, t * CHUNK, Math.min(count, (t + 1) * CHUNK), light))
+                .toArray(int[][]::new)).join();
+        int total = 0;
+        for(int[] l : lowered) total += l.length;
+        int[] all = new int[total];
+        int k = 0;
+        for(int[] l : lowered) {
+            System.arraycopy(l, 0, all, k, l.length);
+            k += l.length;
+        }
+        return all;
+    }
+
+    private int[] relaxRange(int[] cells, int from, int to, boolean light) {
+        int[] out = new int[16];
+        int k = 0;
+        for(int x = from; x < to; x++) {
+            int u = cells[x];
+            float du = costOf(best.get(u));
+            for(int d = 0; d < 4; d++) {
+                float c = edge(u, d);
+                if(c == Float.POSITIVE_INFINITY || (c <= delta) != light) continue;
+                int v = u + Terrain.DIR_I[d] + Terrain.DIR_J[d] * N;
+                if(relax(v, du + c, u)) {
+                    if(k == out.length) out = Arrays.copyOf(out, 2*k);
+                    out[k++] = v;
+                }
+            }
+        }
+        return Arrays.copyOf(out, k);
+    }
+
+    /**
+     * IntList is a growable array of cells.
+     */
+    private static class IntList {
+        int[] a = new int[16];
+        int size = 0;
+        void add(int v) {
+            if(size == a.length) a = Arrays.copyOf(a, 2*size);
+            a[size++] = v;
+        }
+    }
+
+    public void run(Coord source) {
+        if(!source.isInBounds(0, 0, N-1, N-1)) throw new IndexOutOfBoundsException("The source is out of bounds.");
+        run(source.getI() + source.getJ() * N);
+    }
+
+    // computes costs and parents from source; read them with getDistances / getParents
+    public void run(int source) {
+        edgeCosts = terrain.getEdgeCostTable();
+        best = new AtomicLongArray(N*N);
+        for(int c = 0; c < N*N; c++) best.set(c, UNREACHED);
+        best.set(source, pack(0, -1));
+
+        HashMap<Long, IntList> buckets = new HashMap<>();
+        PriorityQueue<Long> order = new PriorityQueue<>();
+        long[] queuedIn = new long[N*N];       // bucket a cell was last queued in, plus one
+        int[] settledIn = new int[N*N];        // round a cell was last settled in, plus one
+        IntList first = new IntList();
+        first.add(source);
+        buckets.put(0L, first);
+        order.add(0L);
+        queuedIn[source] = 1;
+
+        int round = 0;
+        int[] settled = new int[64];
+        while(!order.isEmpty()) {
+            long b = order.poll();
+            round++;
+            int settledCount = 0;
+            IntList bucket;
+            while((bucket = buckets.remove(b)) != null) {
+                // drop cells that have since moved to a lower bucket
+                int n = 0;
+                for(int x = 0; x < bucket.size; x++) {
+                    int v = bucket.a[x];
+                    if(queuedIn[v] != b + 1) continue;
+                    queuedIn[v] = 0;
+                    bucket.a[n++] = v;
+                    if(settledIn[v] != round) {
+                        settledIn[v] = round;
+                        if(settledCount == settled.length) settled = Arrays.copyOf(settled, 2*settledCount);
+                        settled[settledCount++] = v;
+                    }
+                }
+                enqueue(relaxAll(bucket.a, n, true), buckets, order, queuedIn, b);
+            }
+            enqueue(relaxAll(settled, settledCount, false), buckets, order, queuedIn, b);
+        }
+
+        dist = new float[N*N];
+        parent = new int[N*N];
+        for(int c = 0; c < N*N; c++) {
+            long p = best.get(c);
+            dist[c] = costOf(p);
+            parent[c] = (int) p;
+        }
+        best = null;
+    }
+
+    private void enqueue(int[] cells, HashMap<Long, IntList> buckets, PriorityQueue<Long> order, long[] queuedIn, long current) {
+        for(int v : cells) {
+            long b = bucketOf(costOf(best.get(v)));
+            if(queuedIn[v] == b + 1) continue;
+            queuedIn[v] = b + 1;
+            IntList list = buckets.get(b);
+            if(list == null) {
+                list = new IntList();
+                buckets.put(b, list);
+                if(b != current) order.add(b);
+            }
+            list.add(v);
+        }
+    }
+
+    // cost from the source of the last run to every cell (+inf if unreachable)
+    public float[] getDistances() { return dist; }
+
+    // previous cell on a cheapest route from the source, -1 for the source and unreachable cells
+    public int[] getParents() { return parent; }
+
+    // times sequential Dijkstra against delta-stepping for each delta and checks the costs
+    // usage: java DeltaStepping emap|fractal:N [delta ...]
+    public static void main(String[] args) {
+        if(args.length < 1) {
+            StdOut.println("usage: java DeltaStepping emap|fractal:N [delta ...]");
+            return;
+        }
+        Terrain terrain;
+        if(args[0].startsWith("fractal:")) {
+            terrain = new Terrain(Integer.parseInt(args[0].substring(8)));
+            TerrainEditor.setFractalHeights(terrain);
+            TerrainEditor.clampHeights(terrain);
+        } else {
+            terrain = new Terrain(args[0]);
+        }
+        int N = terrain.getN();
+        float[] deltas = { 1, DEFAULT_DELTA, 100000 };
+        if(args.length > 1) {
+            deltas = new float[args.length - 1];
+            for(int k = 1; k < args.length; k++) deltas[k-1] = Float.parseFloat(args[k]);
+        }
+        int source = N/2 + (N/2) * N;
+        terrain.getEdgeCostTable();
+
+        SearchWorkspace ws = new SearchWorkspace(N);
+        ws.useRadixHeap();
+        GridAStar dijkstra = new GridAStar(terrain, ws);
+        dijkstra.begin(source, -1, 0);
+        dijkstra.run();
+        Stopwatch sw = new Stopwatch();
+        dijkstra.begin(source, -1, 0);
+        dijkstra.run();
+        double sequential = sw.elapsedTime();
+        StdOut.printf("%s (%dx%d), %d threads: sequential Dijkstra %.3fs%n", args[0], N, N, ForkJoinPool.commonPool().getParallelism(), sequential);
+
+        for(float delta : deltas) {
+            DeltaStepping ds = new DeltaStepping(terrain, delta);
+            ds.run(source);
+            sw = new Stopwatch();
+            ds.run(source);
+            double t = sw.elapsedTime();
+            int mismatches = 0;
+            for(int c = 0; c < N*N; c++) if(ds.getDistances()[c] != ws.getG(c)) mismatches++;
+            StdOut.printf("  delta %-10s %.3fs  speedup %.2fx  mismatches %d%n", delta, t, sequential / t, mismatches);
+        }
+    }
+}
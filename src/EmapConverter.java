@@ -0,0 +1,44 @@
+/**
+ * EmapConverter converts .emap text files into the binary .tmap format read
+ * by TerrainFile.  The output goes next to the input with .emap replaced by
+ * .tmap, using the smallest bit depth that holds the map unless -bits is
+ * given.  Every written file is mapped back and checked against the source.
+ *
+ * usage: java EmapConverter [-bits 8|16|32] file.emap ...
+ */
+public class EmapConverter {
+    public static void main(String[] args) {
+        int bits = 0;
+        int k = 0;
+        if(args.length >= 2 && args[0].equals("-bits")) {
+            bits = Integer.parseInt(args[1]);
+            k = 2;
+        }
+        if(k >= args.length) {
+            StdOut.println("usage: java EmapConverter [-bits 8|16|32] file.emap ...");
+            return;
+        }
+        for(; k < args.length; k++) {
+            String emap = args[k];
+            String tmap = emap.endsWith(".emap") ? emap.substring(0, emap.length() - 5) + ".tmap" : emap + ".tmap";
+
+            Stopwatch sw = new Stopwatch();
+            Terrain terrain = new Terrain(emap);
+            double parse = sw.elapsedTime();
+            int b = bits != 0 ? bits : TerrainFile.bitsNeeded(terrain);
+            TerrainFile.write(terrain, tmap, b);
+
+            sw = new Stopwatch();
+            Terrain mapped = new Terrain(TerrainFile.map(tmap, true));
+            double open = sw.elapsedTime();
+            int N = terrain.getN();
+            for(int j = 0; j < N; j++) {
+                for(int i = 0; i < N; i++) {
+                    if(mapped.getHeight(i, j) != terrain.getHeight(i, j))
+                        throw new IllegalStateException(tmap + " differs from " + emap + " at (" + i + "," + j + ")");
+                }
+            }
+            StdOut.printf("%s -> %s  N=%d  %d bits  parse %.3fs  open+verify %.3fs%n", emap, tmap, N, b, parse, open);
+        }
+    }
+}
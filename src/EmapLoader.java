@@ -0,0 +1,180 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * EmapLoader reads .emap text files (the format png2emap.py writes: N on the
+ * first line, then one line of N heights per row) much faster than the
+ * token-by-token In scanner in Terrain(String).  The file is split into
+ * chunks at line boundaries; one parallel pass counts the rows in each chunk
+ * so every chunk knows its first row, and a second parallel pass parses the
+ * digits straight out of a mapped buffer into the height store, without
+ * creating a String per token.
+ *
+ * Unlike In, every row must sit on its own line.  Blank lines are ignored.
+ */
+public class EmapLoader {
+    /**
+     * Receives progress while parsing.  It is called from worker threads, so
+     * implementations must be thread-safe.
+     */
+    public interface ProgressListener {
+        void progress(long bytesDone, long bytesTotal);
+    }
+
+    private static final long REPORT_BYTES = 1 << 20;
+
+    private EmapLoader() { }
+
+    public static Terrain load(String emapfile) {
+        return load(emapfile, HeightStore.Format.INT, HeightStore.Layout.ROW_MAJOR, null);
+    }
+
+    public static Terrain load(String emapfile, HeightStore.Format format, HeightStore.Layout layout, ProgressListener listener) {
+        Path path = TerrainFile.resolve(emapfile);
+        if(path == null) throw new IllegalArgumentException("could not find emap file " + emapfile);
+        try(FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new Terrain(load(ch, format, layout, listener));
+        } catch(IOException e) {
+            throw new UncheckedIOException("could not read " + emapfile, e);
+        }
+    }
+
+    private static HeightStore load(FileChannel ch, HeightStore.Format format, HeightStore.Layout layout, ProgressListener listener) throws IOException {
+        long size = ch.size();
+
+        // header line: N
+        ByteBuffer head = ByteBuffer.allocate((int) Math.min(size, 64));
+        ch.read(head, 0);
+        int p = 0, N = 0;
+        while(p < head.limit() && isSpace(head.get(p))) p++;
+        if(p == head.limit() || !isDigit(head.get(p))) throw new IllegalArgumentException("emap does not start with N");
+        while(p < head.limit() && isDigit(head.get(p))) N = N * 10 + (head.get(p++) - '0');
+        while(p < head.limit() && head.get(p) != '\n') p++;
+        long dataStart = p + 1;
+        HeightStore store = HeightStore.create(N, format, layout);
+
+        // chunk boundaries, each moved forward to just past a newline
+        int chunks = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 4L, (size - dataStart) / (256 * 1024)));
+        while((size - dataStart) / chunks >= Integer.MAX_VALUE) chunks *= 2;
+        long[] bounds = new long[chunks + 1];
+        bounds[0] = Math.min(dataStart, size);
+        bounds[chunks] = size;
+        for(int c = 1; c < chunks; c++) {
+            long b = dataStart + (size - dataStart) * c / chunks;
+            bounds[c] = Math.max(bounds[c-1], nextLineStart(ch, b, size));
+        }
+
+        // pass 1: rows per chunk, then prefix sums give each chunk's first row
+        MappedByteBuffer[] buffers = new MappedByteBuffer[chunks];
+        for(int c = 0; c < chunks; c++)
+            buffers[c] = ch.map(FileChannel.MapMode.READ_ONLY, bounds[c], bounds[c+1] - bounds[c]);
+        int[] rows = new int[chunks + 1];
+        IntStream.range(0, chunks).parallel().forEach(c -> rows[c + 1] = countRows(buffers[c]));
+        for(int c = 0; c < chunks; c++) rows[c + 1] += rows[c];
+        if(rows[chunks] != N) throw new IllegalArgumentException("emap has " + rows[chunks] + " rows, expected " + N);
+
+        // pass 2: parse
+        AtomicLong done = new AtomicLong(dataStart);
+        final int n = N;
+        IntStream.range(0, chunks).parallel().forEach(c -> parseRows(buffers[c], rows[c], n, store, done, size, listener));
+        if(listener != null) listener.progress(size, size);
+        return store;
+    }
+
+    private static long nextLineStart(FileChannel ch, long pos, long size) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(4096);
+        while(pos < size) {
+            b.clear();
+            int r = ch.read(b, pos);
+            if(r <= 0) break;
+            for(int k = 0; k < r; k++) {
+                if(b.get(k) == '\n') return pos + k + 1;
+            }
+            pos += r;
+        }
+        return size;
+    }
+
+    private static boolean isDigit(byte b) { return b >= '0' && b <= '9'; }
+    private static boolean isSpace(byte b) { return b == ' ' || b == '\t' || b == '\r' || b == '\n'; }
+
+    private static int countRows(ByteBuffer buf) {
+        int rows = 0;
+        boolean content = false;
+        int limit = buf.limit();
+        for(int k = 0; k < limit; k++) {
+            byte b = buf.get(k);
+            if(b == '\n') {
+                if(content) rows++;
+                content = false;
+            } else if(!isSpace(b)) {
+                content = true;
+            }
+        }
+        if(content) rows++;
+        return rows;
+    }
+
+    private static void parseRows(ByteBuffer buf, int firstRow, int N, HeightStore store, AtomicLong done, long total, ProgressListener listener) {
+        int limit = buf.limit();
+        int j = firstRow, i = 0;
+        int k = 0, reported = 0;
+        while(k < limit) {
+            byte b = buf.get(k);
+            if(b == '\n') {
+                if(i != 0) {
+                    if(i != N) throw new IllegalArgumentException("emap row " + j + " has " + i + " heights, expected " + N);
+                    j++;
+                    i = 0;
+                }
+                k++;
+                if(listener != null && k - reported >= REPORT_BYTES) {
+                    listener.progress(done.addAndGet(k - reported), total);
+                    reported = k;
+                }
+                continue;
+            }
+            if(isSpace(b)) {
+                k++;
+                continue;
+            }
+            boolean negative = b == '-';
+            if(negative) k++;
+            if(k >= limit || !isDigit(buf.get(k))) throw new IllegalArgumentException("emap row " + j + " has a malformed height");
+            int h = 0;
+            while(k < limit && isDigit(buf.get(k))) h = h * 10 + (buf.get(k++) - '0');
+            if(negative) h = -h;
+            if(i >= N) throw new IllegalArgumentException("emap row " + j + " has more than " + N + " heights");
+            if(!store.canHold(h)) throw new IllegalArgumentException("height " + h + " at (" + i + "," + j + ") does not fit in " + store.getBitDepth() + "-bit storage");
+            store.set(i++, j, h);
+        }
+        if(i != 0 && i != N) throw new IllegalArgumentException("emap row " + j + " has " + i + " heights, expected " + N);
+        if(listener != null) listener.progress(done.addAndGet(limit - reported), total);
+        else done.addAndGet(limit - reported);
+    }
+
+    // compares load times of In and EmapLoader; usage: java EmapLoader file.emap ...
+    public static void main(String[] args) {
+        for(String emap : args) {
+            Stopwatch sw = new Stopwatch();
+            Terrain a = new Terrain(emap);
+            double tIn = sw.elapsedTime();
+            sw = new Stopwatch();
+            Terrain b = load(emap, HeightStore.Format.INT, HeightStore.Layout.ROW_MAJOR, null);
+            double tLoader = sw.elapsedTime();
+            int N = a.getN();
+            for(int j = 0; j < N; j++)
+                for(int i = 0; i < N; i++)
+                    if(a.getHeight(i, j) != b.getHeight(i, j))
+                        throw new IllegalStateException("loaders disagree at (" + i + "," + j + ")");
+            StdOut.printf("%s  N=%d  In %.3fs  EmapLoader %.3fs%n", emap, N, tIn, tLoader);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * FlowField runs a single Dijkstra backwards from a goal cell and stores, for
+ * every cell, its travel cost to the goal and the direction of its next step.
+ * Any number of Walkers can then read their route to the goal from any start
+ * cell in time proportional to the route's length, with no further search.
+ * Travel costs are symmetric, so the backward search can use the forward
+ * edge cost table.  Costs to the goal are summed in double precision: summed
+ * backwards in float, flat steps next to a large climb cost would round away
+ * and the routes would drift from the ones GridAStar finds.
+ *
+ * The field listens to the Terrain.  After an edit, update only invalidates
+ * the cells whose route used an edge next to an edited cell (their subtrees
+ * in the field's shortest path tree), and then repairs them, and any cell an
+ * edit made cheaper, starting from the unaffected cells around them.
+ *
+ * As a GridSearch, begin sets the goal to the end cell and step advances the
+ * (possibly incremental) Dijkstra.  Asking for the same end again only costs
+ * the repair of the edits since the last query.
+ */
+public class FlowField implements GridSearch, TerrainListener {
+    private static final byte NONE = -1;
+
+    private final Terrain terrain;
+    private final int N;
+    private final double[] cost;         // cost from the cell to the goal, +inf if not known
+    private final byte[] next;           // direction of the next step towards the goal, or NONE
+    private final CellMinHeap heap;
+    private final int[] settled;         // stamp of the last update that settled a cell
+    private int stamp = 0;
+    private int searchSize;
+    private int[] changed = new int[64]; // cells edited since the last update
+    private int changedCount = 0;
+    private final int[] changedMark;
+    private int changedStamp = 1;
+
+    private int goal = -1;
+    private boolean fresh = false;       // a full search is pending
+    private float[] edgeCosts;
+    private int startCell;
+
+    public FlowField(Terrain terrain) {
+        this.terrain = terrain;
+        this.N = terrain.getN();
+        cost = new double[N*N];
+        next = new byte[N*N];
+        heap = new CellMinHeap(N*N);
+        settled = new int[N*N];
+        changedMark = new int[N*N];
+        terrain.addListener(this);
+    }
+
+    public FlowField(Terrain terrain, Coord goal) {
+        this(terrain);
+        setGoal(goal);
+        update();
+    }
+
+    // stops listening to the terrain
+    public void dispose() {
+        terrain.removeListener(this);
+    }
+
+    public void heightChanged(int i, int j) {
+        if(goal < 0 || fresh) return;
+        int cell = i + j*N;
+        if(changedMark[cell] == changedStamp) return;
+        changedMark[cell] = changedStamp;
+        if(changedCount == changed.length) changed = Arrays.copyOf(changed, 2*changedCount);
+        changed[changedCount++] = cell;
+    }
+
+    // a bulk edit usually covers much of the map, so the field is rebuilt rather than repaired
+    public void heightsChanged(int i0, int j0, int i1, int j1) {
+        if(goal >= 0) fresh = true;
+    }
+
+    public void setGoal(Coord goal) {
+        if(!goal.isInBounds(0, 0, N-1, N-1)) throw new IndexOutOfBoundsException("The goal is out of bounds.");
+        setGoal(goal.getI() + goal.getJ() * N);
+    }
+
+    private void setGoal(int cell) {
+        if(cell == goal) return;
+        goal = cell;
+        fresh = true;
+    }
+
+    public Coord getGoal() {
+        return goal < 0 ? null : new Coord(goal % N, goal / N);
+    }
+
+    // brings the field up to date with the goal and the terrain
+    public void update() {
+        prepare();
+        step(Integer.MAX_VALUE);
+    }
+
+    // queues the work of the next update: a full search, or the repair of edits
+    private void prepare() {
+        if(goal < 0) throw new IllegalStateException("The goal has not been set.");
+        edgeCosts = terrain.getEdgeCostTable();
+        searchSize = 0;
+        if(++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(settled, 0);
+            stamp = 1;
+        }
+        // an update abandoned part way left the field half built, so start it over
+        if(!heap.isEmpty()) fresh = true;
+        heap.clear();
+        if(fresh) {
+            Arrays.fill(cost, Double.POSITIVE_INFINITY);
+            Arrays.fill(next, NONE);
+            cost[goal] = 0;
+            heap.insertOrUpdate(goal, 0);
+            fresh = false;
+        } else if(changedCount > 0) {
+            repair();
+        }
+        clearChanged();
+    }
+
+    private void clearChanged() {
+        changedCount = 0;
+        if(++changedStamp == Integer.MAX_VALUE) {
+            Arrays.fill(changedMark, 0);
+            changedStamp = 1;
+        }
+    }
+
+    // cost of the edge from cell in direction d, +inf off the map
+    private float edge(int cell, int d) {
+        if(edgeCosts != null) return edgeCosts[cell*4 + d];
+        int i = cell % N, j = cell / N;
+        int ni = i + Terrain.DIR_I[d], nj = j + Terrain.DIR_J[d];
+        if(ni < 0 || nj < 0 || ni >= N || nj >= N) return Float.POSITIVE_INFINITY;
+        return terrain.computeTravelCost(i, j, ni, nj);
+    }
+
+    private int neighbor(int cell, int d) {
+        int i = cell % N + Terrain.DIR_I[d], j = cell / N + Terrain.DIR_J[d];
+        if(i < 0 || j < 0 || i >= N || j >= N) return -1;
+        return i + j * N;
+    }
+
+    // invalidates the subtrees whose routes crossed an edited edge and queues
+    // every cell that can offer them, or anyone else, a cheaper route
+    private void repair() {
+        // roots: edited cells, and neighbors whose next step enters one
+        int[] stack = new int[64];
+        int top = 0;
+        int[] removed = new int[64];
+        int removedCount = 0;
+        for(int k = 0; k < changedCount; k++) {
+            int cell = changed[k];
+            for(int d = -1; d < 4; d++) {
+                int c = d < 0 ? cell : neighbor(cell, d);
+                if(c < 0 || c == goal || next[c] == NONE) continue;
+                if(d >= 0 && neighbor(c, next[c]) != cell) continue;
+                if(top == stack.length) stack = Arrays.copyOf(stack, 2*top);
+                stack[top++] = c;
+            }
+        }
+        // a subtree is every cell whose next step leads into it
+        while(top > 0) {
+            int c = stack[--top];
+            if(next[c] == NONE) continue;
+            next[c] = NONE;
+            cost[c] = Double.POSITIVE_INFINITY;
+            if(removedCount == removed.length) removed = Arrays.copyOf(removed, 2*removedCount);
+            removed[removedCount++] = c;
+            for(int d = 0; d < 4; d++) {
+                int u = neighbor(c, d);
+                if(u < 0 || next[u] == NONE || neighbor(u, next[u]) != c) continue;
+                if(top == stack.length) stack = Arrays.copyOf(stack, 2*top);
+                stack[top++] = u;
+            }
+        }
+        // the cells around the removed ones, and around the edits, restart the search
+        for(int k = 0; k < removedCount; k++) seedAround(removed[k]);
+        for(int k = 0; k < changedCount; k++) seedAround(changed[k]);
+    }
+
+    private void seedAround(int cell) {
+        for(int d = -1; d < 4; d++) {
+            int c = d < 0 ? cell : neighbor(cell, d);
+            if(c < 0 || cost[c] == Double.POSITIVE_INFINITY) continue;
+            heap.insertOrUpdate(c, (float) cost[c]);
+        }
+    }
+
+    // settles at most maxExpansions cells; returns true once the field is up to date
+    public boolean step(int maxExpansions) {
+        while(!heap.isEmpty() && maxExpansions-- > 0) {
+            int v = heap.delMin();
+            if(settled[v] != stamp) {
+                settled[v] = stamp;
+                searchSize++;
+            }
+            double cv = cost[v];
+            for(int d = 0; d < 4; d++) {
+                int u = neighbor(v, d);
+                if(u < 0) continue;
+                double nc = cv + edge(v, d);    // symmetric: same as the edge from u to v
+                if(nc < cost[u]) {
+                    cost[u] = nc;
+                    next[u] = (byte) Terrain.DIR_OPPOSITE[d];
+                    heap.insertOrUpdate(u, (float) nc);
+                }
+            }
+        }
+        return heap.isEmpty();
+    }
+
+    public boolean isDone() { return heap.isEmpty(); }
+
+    // travel cost from (i,j) to the goal, +inf if it cannot reach it
+    public double getCostToGoal(int i, int j) {
+        return cost[i + j*N];
+    }
+
+    // direction (an index into Terrain.DIR_I/DIR_J) of the step from (i,j) towards the goal, or -1
+    public int getNextDirection(int i, int j) {
+        return next[i + j*N];
+    }
+
+    // cells from cell to the goal, following the field
+    public int[] route(int cell) {
+        if(cell != goal && next[cell] == NONE) return new int[0];
+        int len = 1;
+        for(int c = cell; c != goal; c = neighbor(c, next[c])) len++;
+        int[] path = new int[len];
+        int k = 0;
+        for(int c = cell; ; c = neighbor(c, next[c])) {
+            path[k++] = c;
+            if(c == goal) break;
+        }
+        return path;
+    }
+
+    // the route from start to the goal, ready to hand to a Walker
+    public List<Coord> route(Coord start) {
+        int[] cells = route(start.getI() + start.getJ() * N);
+        List<Coord> path = new ArrayList<>(cells.length);
+        for(int c : cells) path.add(new Coord(c % N, c / N));
+        return Collections.unmodifiableList(path);
+    }
+
+    // GridSearch: the field to end, read from start
+    public void begin(int startCell, int endCell, float heur) {
+        this.startCell = startCell;
+        setGoal(endCell);
+        prepare();
+    }
+
+    public boolean isFound() { return isDone() && (startCell == goal || next[startCell] != NONE); }
+
+    // summed from the start along the route, like GridAStar
+    public float getPathCost() {
+        int[] path = route(startCell);
+        float c = 0;
+        for(int k = 1; k < path.length; k++) {
+            c += terrain.computeTravelCost(path[k-1] % N, path[k-1] / N, path[k] % N, path[k] / N);
+        }
+        return c;
+    }
+
+    public int[] extractPath() {
+        if(!isFound()) return new int[0];
+        return route(startCell);
+    }
+
+    // cells settled by the last update; a repair settles only the cells it touched
+    public int getSearchSize() { return searchSize; }
+    public boolean wasSearched(int cell) { return settled[cell] == stamp; }
+}
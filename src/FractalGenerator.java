@@ -0,0 +1,186 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * FractalGenerator fills a Terrain with midpoint displacement heights, in
+ * parallel and reproducibly.  A rectangle sets its edge midpoints and center
+ * from its four corners and then splits into quadrants, which only read
+ * cells their parent has set and only write cells inside their own edges,
+ * so the quadrants are filled as fork-join tasks.
+ *
+ * Two quadrants share an edge, and both set its midpoint.  So that they
+ * agree no matter which gets there first, a midpoint's displacement is
+ * drawn from a SplitMix64 stream keyed by the seed and the cell (instead of
+ * from one shared generator), and it is scaled by the length of the edge
+ * rather than by the rectangle's diagonal.  A seed therefore gives the same
+ * map on any number of threads.  Heights are written straight into the
+ * terrain's HeightStore, and the terrain is told about them once at the end.
+ */
+public final class FractalGenerator {
+    private static final int SEQUENTIAL = 64 * 64;    // rectangles with fewer cells are filled on the current thread
+    private static final int CORNER = 32;             // height of the four corners of the map
+    private static final int MIN_HEIGHT = -64;        // heights may go just a bit out of range
+    private static final int MAX_HEIGHT = 255 + 64;
+    private static final long GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final HeightStore heights;
+    private final int N;
+    private final long key;
+
+    private FractalGenerator(HeightStore heights, long seed) {
+        this.heights = heights;
+        this.N = heights.getN();
+        this.key = mix(seed);
+    }
+
+    // fills terrain from seed on the common pool
+    public static void generate(Terrain terrain, long seed) {
+        generate(terrain, seed, ForkJoinPool.commonPool());
+    }
+
+    // fills terrain from seed on pool; maps smaller than 3x3 are left as they are
+    public static void generate(Terrain terrain, long seed, ForkJoinPool pool) {
+        HeightStore store = terrain.getHeightStore();
+        if(!store.canHold(MIN_HEIGHT) || !store.canHold(MAX_HEIGHT))
+            throw new IllegalArgumentException("fractal heights need storage for " + MIN_HEIGHT + " to " + MAX_HEIGHT);
+        int N = terrain.getN();
+        if(N < 3) return;
+        FractalGenerator generator = new FractalGenerator(store, seed);
+        store.set(0, 0, CORNER);
+        store.set(0, N-1, CORNER);
+        store.set(N-1, 0, CORNER);
+        store.set(N-1, N-1, CORNER);
+        pool.invoke(generator.new Fill(0, 0, N-1, N-1));
+        terrain.heightsChanged(0, 0, N-1, N-1);
+    }
+
+    // SplitMix64's output function
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    // uniform in [0,1), fixed by the seed and the cell
+    private double uniform(int i, int j) {
+        long cell = i + (long) j * N;
+        return (mix(key + (cell + 1) * GAMMA) >>> 11) * 0x1.0p-53;
+    }
+
+    private float set(int i, int j, float h) {
+        int v = (int) Math.max(MIN_HEIGHT, Math.min(MAX_HEIGHT, h));
+        heights.set(i, j, v);
+        return v;
+    }
+
+    // midpoint (i,j) of an edge of the given length between heights a and b
+    private float midpoint(int i, int j, float a, float b, int length) {
+        // half the diagonal of a square with this side, as the recursive generator used
+        double d = (float) (Math.sqrt(2.0 * length * length) * 0.5);
+        return set(i, j, (a + b) / 2 + (float) (-d + uniform(i, j) * 2 * d));
+    }
+
+    // sets the edge midpoints and center of the rectangle from its corners; false if it is too small to have any
+    private boolean subdivide(int i0, int j0, int i1, int j1) {
+        int id = i1 - i0;
+        int jd = j1 - j0;
+        if(id <= 1 && jd <= 1) return false;
+        int i01 = (i0 + i1) / 2;
+        int j01 = (j0 + j1) / 2;
+
+        float h00 = heights.get(i0, j0);
+        float h01 = heights.get(i0, j1);
+        float h10 = heights.get(i1, j0);
+        float h11 = heights.get(i1, j1);
+
+        // a midpoint that falls on a corner keeps the corner's height
+        float h0001 = j0 < j01 ? midpoint(i0, j01, h00, h01, jd) : heights.get(i0, j01);
+        float h0010 = i0 < i01 ? midpoint(i01, j0, h00, h10, id) : heights.get(i01, j0);
+        float h1101 = i0 < i01 ? midpoint(i01, j1, h11, h01, id) : heights.get(i01, j1);
+        float h1110 = j0 < j01 ? midpoint(i1, j01, h11, h10, jd) : heights.get(i1, j01);
+        if(i0 < i01 && j0 < j01) set(i01, j01, (float) ((h0001 + h0010 + h1101 + h1110) / 4.0));
+        return true;
+    }
+
+    // fills the rectangle on the current thread
+    private void fill(int i0, int j0, int i1, int j1) {
+        if(!subdivide(i0, j0, i1, j1)) return;
+        int i01 = (i0 + i1) / 2;
+        int j01 = (j0 + j1) / 2;
+        if(i1 - i0 > 1 && j1 - j0 > 1) {
+            fill(i0, j0, i01, j01);
+            fill(i01, j0, i1, j01);
+            fill(i0, j01, i01, j1);
+            fill(i01, j01, i1, j1);
+        } else if(j1 - j0 > 1) {
+            fill(i0, j0, i1, j01);
+            fill(i0, j01, i1, j1);
+        } else {
+            fill(i0, j0, i01, j1);
+            fill(i01, j0, i1, j1);
+        }
+    }
+
+    // fills a rectangle, splitting it into tasks while it is large
+    private final class Fill extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int i0, j0, i1, j1;
+
+        Fill(int i0, int j0, int i1, int j1) {
+            this.i0 = i0;
+            this.j0 = j0;
+            this.i1 = i1;
+            this.j1 = j1;
+        }
+
+        protected void compute() {
+            if((long) (i1 - i0 + 1) * (j1 - j0 + 1) < SEQUENTIAL) {
+                fill(i0, j0, i1, j1);
+                return;
+            }
+            if(!subdivide(i0, j0, i1, j1)) return;
+            int i01 = (i0 + i1) / 2;
+            int j01 = (j0 + j1) / 2;
+            if(i1 - i0 > 1 && j1 - j0 > 1) {
+                invokeAll(new Fill(i0, j0, i01, j01), new Fill(i01, j0, i1, j01),
+                          new Fill(i0, j01, i01, j1), new Fill(i01, j01, i1, j1));
+            } else if(j1 - j0 > 1) {
+                invokeAll(new Fill(i0, j0, i1, j01), new Fill(i0, j01, i1, j1));
+            } else {
+                invokeAll(new Fill(i0, j0, i01, j1), new Fill(i01, j0, i1, j1));
+            }
+        }
+    }
+
+    // times a map at each parallelism and checks that they are all the same
+    // usage: java FractalGenerator N [seed [threads ...]]
+    public static void main(String[] args) {
+        if(args.length < 1) {
+            StdOut.println("usage: java FractalGenerator N [seed [threads ...]]");
+            return;
+        }
+        int N = Integer.parseInt(args[0]);
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+        int[] threads = { 1, Runtime.getRuntime().availableProcessors() };
+        if(args.length > 2) {
+            threads = new int[args.length - 2];
+            for(int k = 2; k < args.length; k++) threads[k-2] = Integer.parseInt(args[k]);
+        }
+        long first = 0;
+        for(int k = 0; k < threads.length; k++) {
+            Terrain terrain = new Terrain(N);
+            ForkJoinPool pool = new ForkJoinPool(threads[k]);
+            Stopwatch sw = new Stopwatch();
+            generate(terrain, seed, pool);
+            double t = sw.elapsedTime();
+            pool.shutdown();
+            long hash = 17;
+            for(int j = 0; j < N; j++) {
+                for(int i = 0; i < N; i++) hash = hash * 31 + terrain.getHeight(i, j);
+            }
+            if(k == 0) first = hash;
+            StdOut.printf("N=%d seed %d, %d threads: %.3fs, %s%n", N, seed, threads[k], t,
+                    hash == first ? "same map" : "DIFFERENT map");
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * GridAStar runs A* over a Terrain using the flat arrays of a
+ * SearchWorkspace.  Open cells are keyed on their cached f = g + h value,
+ * so heap comparisons never recompute a heuristic, and a cheaper route to an
+ * open cell updates its key in place (decrease-key).  The open list itself is
+ * whichever OpenList the workspace currently uses.
+ *
+ * With landmarks set (and still valid for the terrain) the heuristic is the
+ * larger of the straight-line distance and the landmark bound, both scaled
+ * by the heuristic value.
+ */
+public class GridAStar implements GridSearch {
+    private final Terrain terrain;
+    private final SearchWorkspace ws;
+    private int startCell;
+    private int endCell;
+    private float heur;
+    private float[] edgeCosts;
+    private LandmarkHeuristic landmarks;
+    private LandmarkHeuristic alt;      // landmarks used by the current query, or null
+    private boolean done;
+    private boolean found;
+
+    public GridAStar(Terrain terrain, SearchWorkspace ws) {
+        if(ws.getN() != terrain.getN()) throw new IllegalArgumentException("workspace size does not match terrain");
+        this.terrain = terrain;
+        this.ws = ws;
+    }
+
+    public SearchWorkspace getWorkspace() { return ws; }
+
+    // landmark tables for the heuristic, or null for straight-line distance only
+    public void setLandmarks(LandmarkHeuristic landmarks) {
+        if(landmarks != null && landmarks.getTerrain() != terrain) throw new IllegalArgumentException("landmarks belong to another terrain");
+        this.landmarks = landmarks;
+    }
+
+    public void begin(int startCell, int endCell, float heur) {
+        this.startCell = startCell;
+        this.endCell = endCell;
+        this.heur = heur;
+        edgeCosts = terrain.getEdgeCostTable();
+        alt = (landmarks != null && landmarks.isValid() && endCell >= 0) ? landmarks : null;
+        done = false;
+        found = false;
+        ws.begin();
+        ws.generate(startCell, 0, -1);
+        ws.open().insertOrUpdate(startCell, heuristic(startCell));
+    }
+
+    private float heuristic(int cell) {
+        if(heur == 0) return 0;
+        float h = terrain.computeDistance(ws.cellI(cell), ws.cellJ(cell), ws.cellI(endCell), ws.cellJ(endCell));
+        if(alt != null) h = Math.max(h, alt.estimate(cell, endCell));
+        return heur * h;
+    }
+
+    // expands at most maxExpansions cells; returns true once the search is finished
+    public boolean step(int maxExpansions) {
+        final int N = ws.getN();
+        final OpenList open = ws.open();
+        while(!done && maxExpansions-- > 0) {
+            if(open.isEmpty()) {
+                done = true;
+                break;
+            }
+            int cell = open.delMin();
+            ws.close(cell);
+            if(cell == endCell) {
+                found = true;
+                done = true;
+                break;
+            }
+            int i = ws.cellI(cell), j = ws.cellJ(cell);
+            float g = ws.getG(cell);
+            for(int d = 0; d < 4; d++) {
+                int ni = i + Terrain.DIR_I[d], nj = j + Terrain.DIR_J[d];
+                if(ni < 0 || nj < 0 || ni >= N || nj >= N) continue;
+                int next = ws.cell(ni, nj);
+                if(ws.isClosed(next)) continue;
+                float ng = g + (edgeCosts != null ? edgeCosts[cell*4 + d] : terrain.computeTravelCost(i, j, ni, nj));
+                if(ws.isGenerated(next) && ng >= ws.getG(next)) continue;
+                ws.generate(next, ng, cell);
+                open.insertOrUpdate(next, ng + heuristic(next));
+            }
+        }
+        return done;
+    }
+
+    public void run() {
+        step(Integer.MAX_VALUE);
+    }
+
+    public int getSearchSize() { return ws.getGenerated(); }
+    public boolean wasSearched(int cell) { return ws.isGenerated(cell); }
+
+    public boolean isDone() { return done; }
+    public boolean isFound() { return found; }
+
+    public float getPathCost() {
+        return ws.getG(endCell);
+    }
+
+    // returns the cells of the found path, from start to end
+    public int[] extractPath() {
+        if(!found) return new int[0];
+        int len = 0;
+        for(int c = endCell; c != -1; c = ws.getParent(c)) len++;
+        int[] path = new int[len];
+        for(int c = endCell; c != -1; c = ws.getParent(c)) path[--len] = c;
+        return path;
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * GridSearch is a single-query path search over a Terrain's grid, with
+ * cells as flat indices (cell = i + j * N).  A search is started with begin
+ * and advanced with step, so callers can run it to completion or in slices.
+ */
+public interface GridSearch {
+    void begin(int startCell, int endCell, float heur);
+
+    // expands at most maxExpansions cells; returns true once the search is finished
+    boolean step(int maxExpansions);
+
+    boolean isDone();
+    boolean isFound();
+    float getPathCost();
+
+    // cells of the found path, from start to end
+    int[] extractPath();
+
+    // number of distinct cells the search generated
+    int getSearchSize();
+    boolean wasSearched(int cell);
+
+    // counts of the current query for searches that keep their own queue, -1 where not counted:
+    // inserts and key updates, removals, the largest queue size and heuristic evaluations
+    default long getPushes() { return -1; }
+    default long getPops() { return -1; }
+    default long getPeakOpenSize() { return -1; }
+    default long getReExpansions() { return -1; }
+    default long getHeuristicEvaluations() { return -1; }
+}
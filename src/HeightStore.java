@@ -0,0 +1,93 @@
+/**
+ * HeightStore is the storage behind a Terrain.  get and set are unchecked;
+ * Terrain does the bounds checks.  Flat stores keep all N*N heights in one
+ * primitive array in one of three layouts:
+ *
+ * ROW_MAJOR  cell (i,j) at i + j*N, the same order as .emap files
+ * TILED      8x8 tiles stored one after another, row-major inside a tile
+ * Z_ORDER    Morton order, interleaving the bits of i and j
+ *
+ * TILED and Z_ORDER keep a cell's four neighbors close together in memory,
+ * which suits the 4-neighbor expansions of the searches.  PagedHeightStore
+ * instead keeps larger tiles in a file and caches a bounded number of them.
+ */
+public abstract class HeightStore {
+    public enum Format { INT, SHORT, BYTE }
+    public enum Layout { ROW_MAJOR, TILED, Z_ORDER }
+
+    private static final int TILE_SHIFT = 3;
+    private static final int TILE = 1 << TILE_SHIFT;
+
+    protected final int N;
+    private final Layout layout;
+    private final int tilesPerRow;
+
+    protected HeightStore(int N, Layout layout) {
+        if(N < 0) throw new IllegalArgumentException("N must be non-negative");
+        if(layout == Layout.Z_ORDER && N > 65536) throw new IllegalArgumentException("Z_ORDER supports N up to 65536");
+        this.N = N;
+        this.layout = layout;
+        this.tilesPerRow = (N + TILE - 1) / TILE;
+    }
+
+    public static HeightStore create(int N, Format format, Layout layout) {
+        switch(format) {
+            case BYTE:  return new ByteHeightStore(N, layout);
+            case SHORT: return new ShortHeightStore(N, layout);
+            default:    return new IntHeightStore(N, layout);
+        }
+    }
+
+    public int getN() { return N; }
+    public Layout getLayout() { return layout; }
+
+    public abstract int get(int i, int j);
+    public abstract void set(int i, int j, int h);
+
+    // range of heights this store can hold
+    public abstract int getMinHeight();
+    public abstract int getMaxHeight();
+    public abstract int getBitDepth();
+
+    // true if the heights live on disk and are paged in on demand (see PagedHeightStore)
+    public boolean isPaged() { return false; }
+
+    public boolean canHold(int h) {
+        return h >= getMinHeight() && h <= getMaxHeight();
+    }
+
+    // number of array slots the layout needs
+    protected int capacity() {
+        switch(layout) {
+            case TILED:   return tilesPerRow * tilesPerRow * TILE * TILE;
+            case Z_ORDER: {
+                int p = 1;
+                while(p < N) p <<= 1;
+                return p * p;
+            }
+            default:      return N * N;
+        }
+    }
+
+    protected final int index(int i, int j) {
+        switch(layout) {
+            case TILED:
+                return (((j >> TILE_SHIFT) * tilesPerRow + (i >> TILE_SHIFT)) << (2 * TILE_SHIFT))
+                        + ((j & (TILE - 1)) << TILE_SHIFT) + (i & (TILE - 1));
+            case Z_ORDER:
+                return spread(i) | (spread(j) << 1);
+            default:
+                return i + j * N;
+        }
+    }
+
+    // spreads the low 16 bits of v to the even bit positions
+    private static int spread(int v) {
+        v &= 0x0000ffff;
+        v = (v | (v << 8)) & 0x00ff00ff;
+        v = (v | (v << 4)) & 0x0f0f0f0f;
+        v = (v | (v << 2)) & 0x33333333;
+        v = (v | (v << 1)) & 0x55555555;
+        return v;
+    }
+}
@@ -0,0 +1,603 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * HierarchicalAStar is HPA*: it partitions the Terrain into square clusters,
+ * places entrance nodes on the borders between neighboring clusters and
+ * precomputes the travel cost between every pair of entrances of a cluster
+ * with a search confined to that cluster.  A query connects the start and end
+ * to the entrances of their clusters, runs A* over this abstract graph, and
+ * then refines each abstract edge into cells with another confined search.
+ *
+ * A border is split into runs of crossings with the same pair of heights and
+ * gets one entrance per run, at the run's cheapest crossing.  Borders with
+ * more runs than half the cluster size have neighboring runs merged, those
+ * whose entrances are cheapest to walk between along the border first.  Two
+ * runs whose entrances cost far more to walk between than to cross at
+ * either (corridors with a wall between them, ramped or not) are never
+ * merged, so such a border keeps more entrances instead.  Paths are
+ * therefore near optimal rather than optimal.
+ *
+ * The abstract graph listens to the Terrain; an edit only marks the clusters
+ * it touched (and their neighbors, for cells on a border), and those are
+ * rebuilt by the next query.  begin only records the query: step rebuilds
+ * the marked borders and then the clusters a batch at a time, each cluster
+ * counted as the cells its searches may expand, before it starts on the
+ * search itself, so a query after a large edit (or the first one, which
+ * builds the whole graph) can be stepped without stalling its caller.
+ */
+public class HierarchicalAStar implements GridSearch, TerrainListener {
+    private static final float WALL = 16;  // runs this many times costlier to walk between than to cross are kept apart
+    private final Terrain terrain;
+    private final SearchWorkspace ws;     // abstract search over entrance cells
+    private final int N;
+    private final int C;                  // cluster size in cells
+    private final int CW;                 // clusters per side
+    private final int maxEntrances;       // per border, unless keeping walls apart needs more
+
+    // rightTrans[c] / downTrans[c] hold crossings (a0,b0,a1,b1,...) from
+    // cluster c into its right / lower neighbor
+    private final int[][] rightTrans;
+    private final int[][] downTrans;
+    private final int[][] nodes;          // entrance cells of each cluster
+    private final float[][] intra;        // intra[c][a*k + b]: cost between nodes a and b
+    private final int[][][] partners;     // partners[c][a]: cells across the border from node a
+    private final boolean[] dirty;
+    private boolean anyDirty = true;
+    private int[] pending;                // borders, then clusters, still to rebuild, or null
+    private int pendingAt;
+    private boolean pendingClusters;      // pending holds clusters rather than borders
+    private boolean[] changed;            // clusters of the rebuild whose nodes or costs are stale
+    private final LocalSearch local;
+
+    private int startCell;
+    private int endCell;
+    private float heur;
+    private boolean started;              // the start and end are connected to the graph
+    private float[] startDist;            // start to each node of its cluster
+    private float[] endDist;              // each node of the end's cluster to the end
+    private float direct;                 // start to end within one cluster, or +inf
+    private boolean done;
+    private boolean found;
+    private int[] path;
+    private final int[] seen;             // cells any part of the query reached
+    private int seenStamp = 0;
+    private int searchSize;
+
+    /**
+     * LocalSearch is Dijkstra confined to a rectangle of the grid, with its
+     * own small arrays so several can run in parallel.
+     */
+    private static class LocalSearch {
+        private final Terrain terrain;
+        private final int N;
+        private final float[] dist;
+        private final int[] parent;
+        private final CellMinHeap heap;
+        private final boolean[] closed;
+        private int i0, j0, w, h;
+
+        LocalSearch(Terrain terrain, int size) {
+            this.terrain = terrain;
+            this.N = terrain.getN();
+            dist = new float[size*size];
+            parent = new int[size*size];
+            heap = new CellMinHeap(size*size);
+            closed = new boolean[size*size];
+        }
+
+        // searches from cell src within [i0,i1]x[j0,j1]; stops early once target (if >= 0) is closed
+        void run(float[] edgeCosts, int src, int target, int i0, int j0, int i1, int j1) {
+            this.i0 = i0; this.j0 = j0;
+            w = i1 - i0 + 1; h = j1 - j0 + 1;
+            Arrays.fill(dist, 0, w*h, Float.POSITIVE_INFINITY);
+            Arrays.fill(closed, 0, w*h, false);
+            heap.clear();
+            int s = local(src);
+            dist[s] = 0;
+            parent[s] = -1;
+            heap.insertOrUpdate(s, 0);
+            while(!heap.isEmpty()) {
+                int l = heap.delMin();
+                closed[l] = true;
+                int cell = global(l);
+                if(cell == target) return;
+                int li = l % w, lj = l / w;
+                for(int d = 0; d < 4; d++) {
+                    int ni = li + Terrain.DIR_I[d], nj = lj + Terrain.DIR_J[d];
+                    if(ni < 0 || nj < 0 || ni >= w || nj >= h) continue;
+                    int nl = ni + nj * w;
+                    if(closed[nl]) continue;
+                    float c = edgeCosts != null ? edgeCosts[cell*4 + d]
+                            : terrain.computeTravelCost(cell % N, cell / N, i0 + ni, j0 + nj);
+                    float nd = dist[l] + c;
+                    if(nd >= dist[nl]) continue;
+                    dist[nl] = nd;
+                    parent[nl] = l;
+                    heap.insertOrUpdate(nl, nd);
+                }
+            }
+        }
+
+        int local(int cell) { return (cell % N - i0) + (cell / N - j0) * w; }
+        int global(int l) { return (i0 + l % w) + (j0 + l / w) * N; }
+        float dist(int cell) { return dist[local(cell)]; }
+        boolean reached(int l) { return dist[l] != Float.POSITIVE_INFINITY; }
+        int area() { return w * h; }
+
+        // appends the cells after the source up to cell to out, returns the new length
+        int appendPath(int cell, int[] out, int k) {
+            int n = 0;
+            for(int l = local(cell); parent[l] != -1; l = parent[l]) n++;
+            int end = k + n;
+            for(int l = local(cell); parent[l] != -1; l = parent[l]) out[--end] = global(l);
+            return k + n;
+        }
+    }
+
+    public HierarchicalAStar(Terrain terrain, SearchWorkspace ws, int clusterSize) {
+        if(ws.getN() != terrain.getN()) throw new IllegalArgumentException("workspace size does not match terrain");
+        if(clusterSize < 2) throw new IllegalArgumentException("cluster size must be at least 2");
+        this.terrain = terrain;
+        this.ws = ws;
+        this.N = terrain.getN();
+        this.C = clusterSize;
+        this.CW = (N + C - 1) / C;
+        this.maxEntrances = Math.max(1, C / 2);
+        rightTrans = new int[CW*CW][];
+        downTrans = new int[CW*CW][];
+        nodes = new int[CW*CW][];
+        intra = new float[CW*CW][];
+        partners = new int[CW*CW][][];
+        dirty = new boolean[CW*CW];
+        Arrays.fill(dirty, true);
+        seen = new int[N*N];
+        local = new LocalSearch(terrain, C);
+        terrain.addListener(this);
+    }
+
+    public int getClusterSize() { return C; }
+
+    // stops listening to the terrain; the search must not be used afterwards
+    public void dispose() {
+        terrain.removeListener(this);
+    }
+
+    public void heightChanged(int i, int j) {
+        int cx = i / C, cy = j / C;
+        markDirty(cx, cy);
+        // a cell on a border also changes the crossings seen by the neighbor
+        if(i % C == 0) markDirty(cx - 1, cy);
+        if(i % C == C - 1) markDirty(cx + 1, cy);
+        if(j % C == 0) markDirty(cx, cy - 1);
+        if(j % C == C - 1) markDirty(cx, cy + 1);
+    }
+
+    // the clusters of the window and, for cells on their borders, their neighbors
+    public void heightsChanged(int i0, int j0, int i1, int j1) {
+        for(int cy = Math.max(0, j0 - 1) / C; cy <= Math.min(N - 1, j1 + 1) / C; cy++) {
+            for(int cx = Math.max(0, i0 - 1) / C; cx <= Math.min(N - 1, i1 + 1) / C; cx++) markDirty(cx, cy);
+        }
+    }
+
+    private void markDirty(int cx, int cy) {
+        if(cx < 0 || cy < 0 || cx >= CW || cy >= CW) return;
+        dirty[cx + cy*CW] = true;
+        anyDirty = true;
+    }
+
+    private int clusterOf(int cell) {
+        return (cell % N) / C + ((cell / N) / C) * CW;
+    }
+
+    private int indexOf(int c, int cell) {
+        int[] ns = nodes[c];
+        for(int a = 0; a < ns.length; a++) if(ns[a] == cell) return a;
+        return -1;
+    }
+
+    private float crossing(float[] edgeCosts, int a, int d) {
+        if(edgeCosts != null) return edgeCosts[a*4 + d];
+        int i = a % N, j = a / N;
+        return terrain.computeTravelCost(i, j, i + Terrain.DIR_I[d], j + Terrain.DIR_J[d]);
+    }
+
+    // crossings of the border starting at cell first, running len cells along
+    // step, each crossing in direction d
+    private int[] computeBorder(float[] edgeCosts, int first, int step, int len, int d) {
+        int across = Terrain.DIR_I[d] + Terrain.DIR_J[d] * N;
+        int along = step == 1 ? 3 : 2;
+        HeightStore hs = terrain.getHeightStore();
+        // runs of crossings with the same pair of heights; run r covers [runStart[r], runStart[r+1])
+        int[] runStart = new int[len + 1];
+        int[] ha = new int[len], hb = new int[len];
+        int runs = 0;
+        for(int k = 0; k < len; k++) {
+            int a = first + k*step, b = a + across;
+            int h0 = hs.get(a % N, a / N), h1 = hs.get(b % N, b / N);
+            if(runs > 0 && h0 == ha[runs-1] && h1 == hb[runs-1]) continue;
+            runStart[runs] = k;
+            ha[runs] = h0;
+            hb[runs] = h1;
+            runs++;
+        }
+        runStart[runs] = len;
+
+        // each run's entrance: its cheapest crossing, nearest the middle
+        int[] entrance = new int[runs];
+        float[] cost = new float[runs];
+        for(int r = 0; r < runs; r++) {
+            int k0 = runStart[r], k1 = runStart[r+1];
+            int mid = (k0 + k1 - 1) / 2;
+            entrance[r] = mid;
+            cost[r] = crossing(edgeCosts, first + mid*step, d);
+            for(int k = k0; k < k1; k++) {
+                float c = crossing(edgeCosts, first + k*step, d);
+                if(c < cost[r] || (c == cost[r] && Math.abs(k - mid) < Math.abs(entrance[r] - mid))) {
+                    entrance[r] = k;
+                    cost[r] = c;
+                }
+            }
+        }
+
+        // cost of walking along the border on each side, from crossing 0 to crossing k
+        double[] walkA = new double[len], walkB = new double[len];
+        for(int k = 1; k < len; k++) {
+            int a = first + (k-1)*step;
+            walkA[k] = walkA[k-1] + crossing(edgeCosts, a, along);
+            walkB[k] = walkB[k-1] + crossing(edgeCosts, a + across, along);
+        }
+
+        // too many runs: merge the neighbors whose entrances are cheapest to walk
+        // between along both sides of the border, keeping the cheaper entrance,
+        // but never two whose walk costs far more than crossing at either
+        // (corridors with a wall between them, ramped or not); such borders
+        // keep more entrances
+        while(runs > maxEntrances) {
+            int m = -1;
+            double bestWalk = Double.POSITIVE_INFINITY;
+            for(int r = 0; r + 1 < runs; r++) {
+                int p = entrance[r], q = entrance[r+1];
+                // crossing at q instead means walking to p on one side and back on the other
+                double walk = Math.abs(walkA[q] - walkA[p]) + Math.abs(walkB[q] - walkB[p]);
+                if(walk > WALL * Math.max(cost[r], cost[r+1])) continue;
+                if(walk < bestWalk) {
+                    bestWalk = walk;
+                    m = r;
+                }
+            }
+            if(m < 0) break;
+            if(cost[m+1] < cost[m]) {
+                entrance[m] = entrance[m+1];
+                cost[m] = cost[m+1];
+            }
+            for(int r = m + 1; r + 1 < runs; r++) {
+                entrance[r] = entrance[r+1];
+                cost[r] = cost[r+1];
+            }
+            runs--;
+        }
+
+        int[] trans = new int[runs*2];
+        for(int r = 0; r < runs; r++) {
+            trans[2*r] = first + entrance[r]*step;
+            trans[2*r+1] = first + entrance[r]*step + across;
+        }
+        return trans;
+    }
+
+    private void computeBorders(float[] edgeCosts, int c, boolean[] changed) {
+        int cx = c % CW, cy = c / CW;
+        int i0 = cx*C, j0 = cy*C;
+        int i1 = Math.min(N, i0 + C) - 1, j1 = Math.min(N, j0 + C) - 1;
+        if(cx + 1 < CW) {
+            int[] t = computeBorder(edgeCosts, i1 + j0*N, N, j1 - j0 + 1, 3);
+            if(!Arrays.equals(t, rightTrans[c])) {
+                rightTrans[c] = t;
+                changed[c] = changed[c + 1] = true;
+            }
+        }
+        if(cy + 1 < CW) {
+            int[] t = computeBorder(edgeCosts, i0 + j1*N, 1, i1 - i0 + 1, 2);
+            if(!Arrays.equals(t, downTrans[c])) {
+                downTrans[c] = t;
+                changed[c] = changed[c + CW] = true;
+            }
+        }
+    }
+
+    // collects the entrance cells of cluster c and the costs between them
+    private void computeCluster(float[] edgeCosts, int c, LocalSearch search) {
+        int cx = c % CW, cy = c / CW;
+        int[] cells = new int[64];
+        int[][] across = new int[64][];
+        int k = 0;
+        // own side of each border: even entries of right/down, odd entries of left/up
+        int[][] borders = {
+            cx + 1 < CW ? rightTrans[c] : null,
+            cy + 1 < CW ? downTrans[c] : null,
+            cx > 0 ? rightTrans[c - 1] : null,
+            cy > 0 ? downTrans[c - CW] : null };
+        for(int s = 0; s < 4; s++) {
+            int[] t = borders[s];
+            if(t == null) continue;
+            int own = s < 2 ? 0 : 1;
+            for(int p = 0; p < t.length; p += 2) {
+                int cell = t[p + own], other = t[p + 1 - own];
+                int a = 0;
+                while(a < k && cells[a] != cell) a++;
+                if(a == k) {
+                    if(k == cells.length) {
+                        cells = Arrays.copyOf(cells, 2*k);
+                        across = Arrays.copyOf(across, 2*k);
+                    }
+                    cells[k] = cell;
+                    across[k] = new int[0];
+                    k++;
+                }
+                across[a] = Arrays.copyOf(across[a], across[a].length + 1);
+                across[a][across[a].length - 1] = other;
+            }
+        }
+        int i0 = cx*C, j0 = cy*C;
+        int i1 = Math.min(N, i0 + C) - 1, j1 = Math.min(N, j0 + C) - 1;
+        float[] costs = new float[k*k];
+        for(int a = 0; a < k; a++) {
+            search.run(edgeCosts, cells[a], -1, i0, j0, i1, j1);
+            for(int b = 0; b < k; b++) costs[a*k + b] = search.dist(cells[b]);
+        }
+        nodes[c] = Arrays.copyOf(cells, k);
+        partners[c] = Arrays.copyOf(across, k);
+        intra[c] = costs;
+    }
+
+    // takes the borders and clusters invalidated since the last rebuild; edits made
+    // while it runs mark clusters for the one after
+    private void startRebuild() {
+        changed = dirty.clone();
+        // a border belongs to the cluster on its left or upper side
+        boolean[] border = new boolean[CW*CW];
+        for(int c = 0; c < CW*CW; c++) {
+            if(!dirty[c]) continue;
+            border[c] = true;
+            if(c % CW > 0) border[c - 1] = true;
+            if(c / CW > 0) border[c - CW] = true;
+        }
+        pending = IntStream.range(0, CW*CW).filter(c -> border[c]).toArray();
+        pendingAt = 0;
+        pendingClusters = false;
+        Arrays.fill(dirty, false);
+        anyDirty = false;
+    }
+
+    // rebuilds pending borders, then clusters, worth about budget expansions (at least one
+    // of them); returns the budget left, with pending null once the graph is up to date
+    private int rebuild(float[] edgeCosts, int budget) {
+        while(true) {
+            if(pending == null) {
+                if(!anyDirty) return budget;
+                startRebuild();
+            }
+            if(budget <= 0) return budget;
+            int from = pendingAt;
+            while(pendingAt < pending.length && budget > 0) budget -= rebuildCost(pending[pendingAt++]);
+            IntStream batch = Arrays.stream(pending, from, pendingAt).parallel();
+            // each border writes only its own transitions; the changed flags may be set from several threads
+            if(pendingClusters) batch.forEach(c -> computeCluster(edgeCosts, c, new LocalSearch(terrain, C)));
+            else batch.forEach(c -> computeBorders(edgeCosts, c, changed));
+            if(pendingAt < pending.length) return budget;
+            if(pendingClusters) {
+                pending = null;
+            } else {
+                pending = IntStream.range(0, CW*CW).filter(c -> changed[c]).toArray();
+                pendingAt = 0;
+                pendingClusters = true;
+            }
+        }
+    }
+
+    // expansions charged for rebuilding pending border or cluster c
+    private int rebuildCost(int c) {
+        if(!pendingClusters) return C;
+        int k = nodes[c] != null ? nodes[c].length : 2 * C;
+        return k * C * C;
+    }
+
+    public void begin(int startCell, int endCell, float heur) {
+        this.startCell = startCell;
+        this.endCell = endCell;
+        this.heur = heur;
+        started = false;
+        done = false;
+        found = false;
+        path = null;
+        if(++seenStamp == Integer.MAX_VALUE) {
+            Arrays.fill(seen, 0);
+            seenStamp = 1;
+        }
+        searchSize = 0;
+    }
+
+    // connects the start and end to the up to date graph and opens the abstract search
+    private void startSearch(float[] edgeCosts) {
+        int sc = clusterOf(startCell), ec = clusterOf(endCell);
+        startDist = connect(edgeCosts, startCell, sc);
+        direct = sc == ec ? local.dist(endCell) : Float.POSITIVE_INFINITY;
+        endDist = connect(edgeCosts, endCell, ec);
+
+        ws.useBinaryHeap();
+        ws.begin();
+        ws.generate(startCell, 0, -1);
+        see(startCell);
+        ws.open().insertOrUpdate(startCell, heuristic(startCell));
+        started = true;
+    }
+
+    // costs from cell to every entrance of its cluster c (travel costs are symmetric)
+    private float[] connect(float[] edgeCosts, int cell, int c) {
+        int cx = c % CW, cy = c / CW;
+        int i0 = cx*C, j0 = cy*C;
+        local.run(edgeCosts, cell, -1, i0, j0, Math.min(N, i0 + C) - 1, Math.min(N, j0 + C) - 1);
+        for(int l = 0; l < local.area(); l++) if(local.reached(l)) see(local.global(l));
+        int[] ns = nodes[c];
+        float[] d = new float[ns.length];
+        for(int a = 0; a < ns.length; a++) d[a] = local.dist(ns[a]);
+        return d;
+    }
+
+    private void see(int cell) {
+        if(seen[cell] == seenStamp) return;
+        seen[cell] = seenStamp;
+        searchSize++;
+    }
+
+    private float heuristic(int cell) {
+        if(heur == 0) return 0;
+        return heur * terrain.computeDistance(cell % N, cell / N, endCell % N, endCell / N);
+    }
+
+    private void relax(int from, int to, float g) {
+        if(ws.isClosed(to)) return;
+        if(ws.isGenerated(to) && g >= ws.getG(to)) return;
+        ws.generate(to, g, from);
+        see(to);
+        ws.open().insertOrUpdate(to, g + heuristic(to));
+    }
+
+    public boolean step(int maxExpansions) {
+        if(!started && !done) {
+            float[] edgeCosts = terrain.getEdgeCostTable();
+            maxExpansions = rebuild(edgeCosts, maxExpansions);
+            if(pending != null) return false;
+            startSearch(edgeCosts);
+        }
+        final OpenList open = ws.open();
+        while(!done && maxExpansions-- > 0) {
+            if(open.isEmpty()) {
+                done = true;
+                break;
+            }
+            int cell = open.delMin();
+            ws.close(cell);
+            if(cell == endCell) {
+                found = true;
+                done = true;
+                refine();
+                break;
+            }
+            float g = ws.getG(cell);
+            int c = clusterOf(cell);
+            int[] ns = nodes[c];
+            int a = indexOf(c, cell);
+            if(cell == startCell) {
+                for(int b = 0; b < ns.length; b++) relax(cell, ns[b], g + startDist[b]);
+                if(direct != Float.POSITIVE_INFINITY) relax(cell, endCell, g + direct);
+            } else if(a >= 0) {
+                int k = ns.length;
+                for(int b = 0; b < k; b++) if(b != a) relax(cell, ns[b], g + intra[c][a*k + b]);
+            }
+            if(a >= 0) {
+                for(int other : partners[c][a]) {
+                    relax(cell, other, g + terrain.computeTravelCost(cell % N, cell / N, other % N, other / N));
+                }
+                if(c == clusterOf(endCell)) relax(cell, endCell, g + endDist[a]);
+            }
+        }
+        return done;
+    }
+
+    // turns the abstract path into cells, searching each cluster it crosses
+    private void refine() {
+        float[] edgeCosts = terrain.getEdgeCostTable();
+        int n = 0;
+        for(int c = endCell; c != -1; c = ws.getParent(c)) n++;
+        int[] abs = new int[n];
+        for(int c = endCell; c != -1; c = ws.getParent(c)) abs[--n] = c;
+
+        int[] cells = new int[Math.max(16, abs.length * 2)];
+        int k = 0;
+        cells[k++] = abs[0];
+        for(int x = 1; x < abs.length; x++) {
+            int u = abs[x-1], v = abs[x];
+            int cu = clusterOf(u);
+            if(cu != clusterOf(v)) {
+                if(k == cells.length) cells = Arrays.copyOf(cells, 2*k);
+                cells[k++] = v;
+                continue;
+            }
+            int cx = cu % CW, cy = cu / CW;
+            int i0 = cx*C, j0 = cy*C;
+            local.run(edgeCosts, u, v, i0, j0, Math.min(N, i0 + C) - 1, Math.min(N, j0 + C) - 1);
+            for(int l = 0; l < local.area(); l++) if(local.reached(l)) see(local.global(l));
+            if(k + C*C > cells.length) cells = Arrays.copyOf(cells, 2*(k + C*C));
+            k = local.appendPath(v, cells, k);
+        }
+        path = Arrays.copyOf(cells, k);
+    }
+
+    public boolean isDone() { return done; }
+    public boolean isFound() { return found; }
+
+    // summed from the start along the refined path, like GridAStar
+    public float getPathCost() {
+        if(path == null) return ws.getG(endCell);
+        float cost = 0;
+        for(int k = 1; k < path.length; k++) {
+            cost += terrain.computeTravelCost(path[k-1] % N, path[k-1] / N, path[k] % N, path[k] / N);
+        }
+        return cost;
+    }
+
+    public int[] extractPath() {
+        if(!found) return new int[0];
+        return path.clone();
+    }
+
+    public int getSearchSize() { return searchSize; }
+    public boolean wasSearched(int cell) { return seen[cell] == seenStamp; }
+
+    // compares path costs against A* on random queries, before and after each of a few random brush edits
+    // usage: java HierarchicalAStar emap [clusterSize] [edits] [queries]
+    public static void main(String[] args) {
+        if(args.length < 1) {
+            StdOut.println("usage: java HierarchicalAStar emap [clusterSize] [edits] [queries]");
+            return;
+        }
+        Terrain terrain = new Terrain(args[0]);
+        int edits = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        int count = args.length > 3 ? Integer.parseInt(args[3]) : 60;
+        int N = terrain.getN();
+        Pathfinder hpa = new Pathfinder(terrain);
+        hpa.setSearchMode(Pathfinder.SearchMode.HIERARCHICAL);
+        if(args.length > 1) hpa.setClusterSize(Integer.parseInt(args[1]));
+        Pathfinder astar = new Pathfinder(terrain);
+        for(int e = 0; e <= edits; e++) {
+            if(e > 0) TerrainEditor.addHeight(StdRandom.uniform(N), StdRandom.uniform(N), N/10, 40, terrain);
+            int found = 0, worse = 0;
+            double sum = 0, max = 0;
+            for(int k = 0; k < count; k++) {
+                Coord start = new Coord(StdRandom.uniform(N), StdRandom.uniform(N));
+                Coord end = new Coord(StdRandom.uniform(N), StdRandom.uniform(N));
+                astar.resetPath();
+                astar.setPathStart(start);
+                astar.setPathEnd(end);
+                astar.computePath();
+                hpa.resetPath();
+                hpa.setPathStart(start);
+                hpa.setPathEnd(end);
+                hpa.computePath();
+                if(!astar.foundPath()) continue;
+                if(!hpa.foundPath()) throw new IllegalStateException("no path from " + start + " to " + end + " after " + e + " edits");
+                double ratio = hpa.getPathCost() / Math.max(astar.getPathCost(), 1e-9);
+                found++;
+                sum += ratio;
+                max = Math.max(max, ratio);
+                if(ratio > 1.5) worse++;
+            }
+            StdOut.printf("%s C=%d, %d edits: %d queries, cost / A* mean %.4f max %.3f, %d over 1.5x%n",
+                    args[0], hpa.getClusterSize(), e, found, found == 0 ? 0 : sum / found, max, worse);
+        }
+        hpa.dispose();
+        astar.dispose();
+    }
+}
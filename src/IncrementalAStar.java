@@ -0,0 +1,323 @@
+import java.util.Arrays;
+
+/**
+ * IncrementalAStar is Lifelong Planning A* (LPA*).  It keeps its search tree
+ * (g and rhs values and the open list) between queries, and listens to the
+ * Terrain for changed cells.  When asked for the same start, end and
+ * heuristic again it only repairs the cells whose costs became inconsistent
+ * after an edit, instead of searching the whole map again; any other query
+ * starts a fresh search.  Like GridAStar the result is optimal for heuristic
+ * values up to 1.  Costs are accumulated in double precision, so on maps with
+ * very expensive climbs the path can differ from GridAStar's in the last
+ * float bits of its cost.
+ *
+ * getSearchSize and wasSearched describe the last repair only, so after a
+ * small edit they show how little of the map had to be searched again.
+ */
+public class IncrementalAStar implements GridSearch, TerrainListener {
+    private final Terrain terrain;
+    private final int N;
+    private final double[] g;             // doubles, so adding a flat step to a large cost never rounds away
+    private final double[] rhs;
+    private final int[] parent;            // neighbor rhs was taken from
+    private final KeyHeap open;
+    private final int[] expanded;          // stamp of the last repair that expanded a cell
+    private int stamp = 0;
+    private int searchSize;
+    private long pushes, pops, peakOpenSize, reExpansions, heuristicEvaluations;
+    private int[] changed = new int[64];   // cells edited since the last repair
+    private int changedCount = 0;
+    private final int[] changedMark;
+    private int changedStamp = 1;
+
+    private boolean initialized = false;
+    private int startCell = -1;
+    private int endCell = -1;
+    private float heur;
+    private float[] edgeCosts;
+    private boolean done;
+
+    /**
+     * KeyHeap is an indexed binary min heap over cells ordered by the LPA*
+     * key pair (k1, k2), compared lexicographically.
+     */
+    private static class KeyHeap {
+        private final int[] heap;
+        private final int[] pos;
+        private final double[] k1;
+        private final double[] k2;
+        private int size;
+
+        KeyHeap(int capacity) {
+            heap = new int[capacity + 1];
+            pos = new int[capacity];
+            k1 = new double[capacity];
+            k2 = new double[capacity];
+        }
+
+        boolean isEmpty() { return size == 0; }
+        int min() { return heap[1]; }
+        double minK1() { return k1[heap[1]]; }
+        double minK2() { return k2[heap[1]]; }
+
+        void insertOrUpdate(int cell, double a, double b) {
+            if(pos[cell] == 0) {
+                heap[++size] = cell;
+                pos[cell] = size;
+                k1[cell] = a; k2[cell] = b;
+                swim(size);
+            } else {
+                k1[cell] = a; k2[cell] = b;
+                swim(pos[cell]);
+                sink(pos[cell]);
+            }
+        }
+
+        int delMin() {
+            int min = heap[1];
+            exch(1, size);
+            size--;
+            sink(1);
+            pos[min] = 0;
+            return min;
+        }
+
+        void remove(int cell) {
+            int p = pos[cell];
+            if(p == 0) return;
+            exch(p, size);
+            size--;
+            if(p <= size) {
+                swim(p);
+                sink(p);
+            }
+            pos[cell] = 0;
+        }
+
+        void clear() {
+            for(int k = 1; k <= size; k++) pos[heap[k]] = 0;
+            size = 0;
+        }
+
+        private boolean less(int a, int b) {
+            int ca = heap[a], cb = heap[b];
+            return k1[ca] < k1[cb] || (k1[ca] == k1[cb] && k2[ca] < k2[cb]);
+        }
+
+        private void exch(int a, int b) {
+            int ca = heap[a], cb = heap[b];
+            heap[a] = cb; pos[cb] = a;
+            heap[b] = ca; pos[ca] = b;
+        }
+
+        private void swim(int k) {
+            while(k > 1 && less(k, k/2)) {
+                exch(k, k/2);
+                k = k/2;
+            }
+        }
+
+        private void sink(int k) {
+            while(2*k <= size) {
+                int j = 2*k;
+                if(j < size && less(j+1, j)) j++;
+                if(!less(j, k)) break;
+                exch(k, j);
+                k = j;
+            }
+        }
+    }
+
+    public IncrementalAStar(Terrain terrain) {
+        this.terrain = terrain;
+        this.N = terrain.getN();
+        g = new double[N*N];
+        rhs = new double[N*N];
+        parent = new int[N*N];
+        open = new KeyHeap(N*N);
+        expanded = new int[N*N];
+        changedMark = new int[N*N];
+        terrain.addListener(this);
+    }
+
+    // stops listening to the terrain; the search must not be used afterwards
+    public void dispose() {
+        terrain.removeListener(this);
+    }
+
+    public void heightChanged(int i, int j) {
+        if(!initialized) return;
+        int cell = i + j*N;
+        if(changedMark[cell] == changedStamp) return;
+        changedMark[cell] = changedStamp;
+        if(changedCount == changed.length) changed = Arrays.copyOf(changed, 2*changedCount);
+        changed[changedCount++] = cell;
+    }
+
+    // a bulk edit usually covers much of the map, so the next query starts over
+    public void heightsChanged(int i0, int j0, int i1, int j1) {
+        initialized = false;
+    }
+
+    public void begin(int startCell, int endCell, float heur) {
+        edgeCosts = terrain.getEdgeCostTable();
+        done = false;
+        searchSize = 0;
+        pushes = pops = peakOpenSize = reExpansions = heuristicEvaluations = 0;
+        if(++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(expanded, 0);
+            stamp = 1;
+        }
+        if(!initialized || startCell != this.startCell || endCell != this.endCell || heur != this.heur) {
+            this.startCell = startCell;
+            this.endCell = endCell;
+            this.heur = heur;
+            Arrays.fill(g, Double.POSITIVE_INFINITY);
+            Arrays.fill(rhs, Double.POSITIVE_INFINITY);
+            open.clear();
+            rhs[startCell] = 0;
+            parent[startCell] = -1;
+            insert(startCell);
+            initialized = true;
+            clearChanged();
+            return;
+        }
+        // an edited cell changes the cost of its four edges
+        for(int k = 0; k < changedCount; k++) {
+            int cell = changed[k];
+            update(cell);
+            int i = cell % N, j = cell / N;
+            for(int d = 0; d < 4; d++) {
+                int ni = i + Terrain.DIR_I[d], nj = j + Terrain.DIR_J[d];
+                if(ni < 0 || nj < 0 || ni >= N || nj >= N) continue;
+                update(ni + nj*N);
+            }
+        }
+        clearChanged();
+    }
+
+    private void clearChanged() {
+        changedCount = 0;
+        if(++changedStamp == Integer.MAX_VALUE) {
+            Arrays.fill(changedMark, 0);
+            changedStamp = 1;
+        }
+    }
+
+    private float heuristic(int cell) {
+        if(heur == 0) return 0;
+        heuristicEvaluations++;
+        return heur * terrain.computeDistance(cell % N, cell / N, endCell % N, endCell / N);
+    }
+
+    // cost of the edge from cell in direction d (travel costs are symmetric)
+    private float cost(int cell, int d) {
+        if(edgeCosts != null) return edgeCosts[cell*4 + d];
+        int i = cell % N, j = cell / N;
+        return terrain.computeTravelCost(i, j, i + Terrain.DIR_I[d], j + Terrain.DIR_J[d]);
+    }
+
+    private void insert(int cell) {
+        double m = Math.min(g[cell], rhs[cell]);
+        open.insertOrUpdate(cell, m + heuristic(cell), m);
+        pushes++;
+        peakOpenSize = Math.max(peakOpenSize, open.size);
+    }
+
+    // recomputes rhs of cell from its neighbors and requeues it if inconsistent
+    private void update(int cell) {
+        if(cell != startCell) {
+            int i = cell % N, j = cell / N;
+            double best = Double.POSITIVE_INFINITY;
+            int from = -1;
+            for(int d = 0; d < 4; d++) {
+                int ni = i + Terrain.DIR_I[d], nj = j + Terrain.DIR_J[d];
+                if(ni < 0 || nj < 0 || ni >= N || nj >= N) continue;
+                int p = ni + nj*N;
+                double v = g[p] + cost(cell, d);
+                if(v < best) {
+                    best = v;
+                    from = p;
+                }
+            }
+            rhs[cell] = best;
+            parent[cell] = from;
+        }
+        if(g[cell] != rhs[cell]) insert(cell);
+        else open.remove(cell);
+    }
+
+    // true while the top of the open list is below the end's key or the end is inconsistent
+    private boolean needsWork() {
+        if(open.isEmpty()) return false;
+        if(rhs[endCell] != g[endCell]) return true;
+        double m = Math.min(g[endCell], rhs[endCell]);
+        double e1 = m + heuristic(endCell);
+        double t1 = open.minK1();
+        return t1 < e1 || (t1 == e1 && open.minK2() < m);
+    }
+
+    public boolean step(int maxExpansions) {
+        while(!done && maxExpansions-- > 0) {
+            if(!needsWork()) {
+                done = true;
+                break;
+            }
+            int cell = open.delMin();
+            pops++;
+            if(expanded[cell] != stamp) {
+                expanded[cell] = stamp;
+                searchSize++;
+            } else {
+                reExpansions++;
+            }
+            int i = cell % N, j = cell / N;
+            if(g[cell] > rhs[cell]) {
+                g[cell] = rhs[cell];
+            } else {
+                g[cell] = Float.POSITIVE_INFINITY;
+                update(cell);
+            }
+            for(int d = 0; d < 4; d++) {
+                int ni = i + Terrain.DIR_I[d], nj = j + Terrain.DIR_J[d];
+                if(ni < 0 || nj < 0 || ni >= N || nj >= N) continue;
+                update(ni + nj*N);
+            }
+        }
+        return done;
+    }
+
+    public boolean isDone() { return done; }
+    public boolean isFound() { return done && g[endCell] != Double.POSITIVE_INFINITY; }
+
+    // summed in float from the start along the path, like GridAStar
+    public float getPathCost() {
+        int[] path = extractPath();
+        float cost = 0;
+        for(int k = 1; k < path.length; k++) {
+            cost += terrain.computeTravelCost(path[k-1] % N, path[k-1] / N, path[k] % N, path[k] / N);
+        }
+        return cost;
+    }
+
+    public int[] extractPath() {
+        if(!isFound()) return new int[0];
+        int len = 0;
+        for(int c = endCell; c != -1; c = parent[c]) {
+            if(++len > N*N) throw new IllegalStateException("search tree has a cycle");
+        }
+        int[] path = new int[len];
+        for(int c = endCell; c != -1; c = parent[c]) path[--len] = c;
+        return path;
+    }
+
+    public int getSearchSize() { return searchSize; }
+
+    // of the last repair, like getSearchSize; a cell made over- and then underconsistent is expanded twice
+    public long getPushes() { return pushes; }
+    public long getPops() { return pops; }
+    public long getPeakOpenSize() { return peakOpenSize; }
+    public long getReExpansions() { return reExpansions; }
+    public long getHeuristicEvaluations() { return heuristicEvaluations; }
+    public boolean wasSearched(int cell) { return expanded[cell] == stamp; }
+}
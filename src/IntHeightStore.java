@@ -0,0 +1,18 @@
+/**
+ * IntHeightStore keeps heights in one flat int[].
+ */
+public class IntHeightStore extends HeightStore {
+    private final int[] heights;
+
+    public IntHeightStore(int N, Layout layout) {
+        super(N, layout);
+        heights = new int[capacity()];
+    }
+
+    public int get(int i, int j) { return heights[index(i, j)]; }
+    public void set(int i, int j, int h) { heights[index(i, j)] = h; }
+
+    public int getMinHeight() { return Integer.MIN_VALUE; }
+    public int getMaxHeight() { return Integer.MAX_VALUE; }
+    public int getBitDepth() { return 32; }
+}
@@ -5,6 +5,8 @@ import java.awt.event.KeyEvent;
  * path and allows the user to change parameters of the Pathfinder.  Below
  * is a list of commands and what they do.  Note: some of the commands
  * modify the properties of the path finder and some modify the terrain.
+ * Paths are searched a slice per frame, so the map keeps redrawing and
+ * taking input while a long search runs, and any change restarts it.
  *
  * Command        Action                                      Terrain
  * C              clear path
@@ -12,6 +14,10 @@ import java.awt.event.KeyEvent;
  * S/E            set start/end location to mouse
  * left/right     halve/double path search heuristic value
  * 0/1            set path search heuristic to 0 or 1
+ * B              toggle bidirectional search
+ * H              toggle hierarchical (HPA*) search
+ * I              toggle incremental replanning after edits
+ * A              toggle anytime (ARA*) search with a 50 ms budget
  * W              start a walker to show the path
  * R              randomly generate a new terrain                *
  * M              smooths terrain under mouse                    *
@@ -25,6 +31,12 @@ public class InteractivePathfinderVisualizer {
     // sets how many redraws it should take for the walker to reach its destination
     private final static float STEPS_TO_WALK = 100.0f;
 
+    // how long the search may run per frame, in microseconds
+    private final static long SEARCH_SLICE = 20000;
+
+    // time budget of the anytime search, in milliseconds
+    private final static double ANYTIME_BUDGET = 50;
+
     // for convenience, here are the emap files that are located under heightmaps/ folder
     // the python script in that folder converts png files to emap. \
     // you can use it to create your own maps to test your code
@@ -67,6 +79,11 @@ public class InteractivePathfinderVisualizer {
         // prevent repeated applications
         boolean keyboardR = false;
         boolean keyboardM = false;
+        boolean keyboardB = false;
+        boolean keyboardH = false;
+        boolean keyboardI = false;
+        boolean keyboardA = false;
+        pf.setTimeBudget(ANYTIME_BUDGET);
 
         Walker walker = null;
 
@@ -95,6 +112,34 @@ public class InteractivePathfinderVisualizer {
                 recompute = true;
             }
 
+            if(StdDraw.isKeyPressed(KeyEvent.VK_B) && !keyboardB) {
+                boolean bidirectional = pf.getSearchMode() == Pathfinder.SearchMode.BIDIRECTIONAL;
+                pf.setSearchMode(bidirectional ? Pathfinder.SearchMode.ASTAR : Pathfinder.SearchMode.BIDIRECTIONAL);
+                recompute = true;
+            }
+            keyboardB = StdDraw.isKeyPressed(KeyEvent.VK_B);
+
+            if(StdDraw.isKeyPressed(KeyEvent.VK_H) && !keyboardH) {
+                boolean hierarchical = pf.getSearchMode() == Pathfinder.SearchMode.HIERARCHICAL;
+                pf.setSearchMode(hierarchical ? Pathfinder.SearchMode.ASTAR : Pathfinder.SearchMode.HIERARCHICAL);
+                recompute = true;
+            }
+            keyboardH = StdDraw.isKeyPressed(KeyEvent.VK_H);
+
+            if(StdDraw.isKeyPressed(KeyEvent.VK_I) && !keyboardI) {
+                boolean incremental = pf.getSearchMode() == Pathfinder.SearchMode.INCREMENTAL;
+                pf.setSearchMode(incremental ? Pathfinder.SearchMode.ASTAR : Pathfinder.SearchMode.INCREMENTAL);
+                recompute = true;
+            }
+            keyboardI = StdDraw.isKeyPressed(KeyEvent.VK_I);
+
+            if(StdDraw.isKeyPressed(KeyEvent.VK_A) && !keyboardA) {
+                boolean anytime = pf.getSearchMode() == Pathfinder.SearchMode.ANYTIME;
+                pf.setSearchMode(anytime ? Pathfinder.SearchMode.ASTAR : Pathfinder.SearchMode.ANYTIME);
+                recompute = true;
+            }
+            keyboardA = StdDraw.isKeyPressed(KeyEvent.VK_A);
+
             if(StdDraw.isKeyPressed(KeyEvent.VK_C)) {
                 pf.resetPath();
                 walker = null;
@@ -143,9 +188,9 @@ public class InteractivePathfinderVisualizer {
             }
 
             if(StdDraw.isKeyPressed(KeyEvent.VK_W)) {
-                Iterable<Coord> path = pf.getPathSolution();
-                if(path != null) {
-                    walker = new Walker(terrain, pf.getPathSolution());
+                PackedPath path = pf.getPathSolution();
+                if(!path.isEmpty()) {
+                    walker = new Walker(terrain, path);
                 }
             }
 
@@ -162,11 +207,17 @@ public class InteractivePathfinderVisualizer {
                 walker = null;
                 pf.resetPath();
                 if(pf.getPathStart() != null && pf.getPathEnd() != null) {
-                    pf.computePath();
+                    pf.beginPath();
                 }
                 redraw = true;
             }
 
+            // advance the search by one slice; a stale one was abandoned above
+            if(pf.isComputing()) {
+                pf.stepPathFor(SEARCH_SLICE);
+                redraw = true;
+            }
+
             if(redraw) {
                 PathfinderVisualizer.draw(terrain, pf, walker, N);
                 StdDraw.show(DELAY);
@@ -0,0 +1,336 @@
+/**
+ * JumpPointSearch is A* with jump point pruning for the flat parts of a
+ * Terrain.  A step between two cells of equal height always costs exactly 1,
+ * so a region of equal height behaves like an unweighted 4-connected grid
+ * whose obstacles are the cells of other heights.  Within such a region the
+ * search follows the horizontal-then-vertical canonical ordering of jump
+ * point search on 4-connected grids: it scans straight runs and only stops at
+ * the goal or where a neighbor becomes forced, instead of expanding every
+ * symmetric equal-cost cell.
+ *
+ * Climbs to a different height are not obstacles, just expensive.  Every cell
+ * a scan passes offers its climbs as deferred exits: an exit is kept in a
+ * separate queue, keyed like an open cell, and the cell it climbs to is only
+ * generated once the exit is the cheapest thing left to search.  A cell
+ * entered by a climb is expanded normally, in all four directions.  Costs are
+ * accumulated one step at a time, exactly as GridAStar would along the same
+ * cells, so the path costs match.
+ */
+public class JumpPointSearch implements GridSearch {
+    private static final int UP = 0, LEFT = 1, DOWN = 2, RIGHT = 3;   // indexes into Terrain.DIR_I/DIR_J
+
+    private final Terrain terrain;
+    private final SearchWorkspace ws;
+    private final int N;
+    private final int[] from;       // flat cell a climb into this cell started from, or -1
+    private final int[] corner;     // turn between the parent and from, or -1
+    private final float[] exitG;    // best deferred exit cost into a cell this query
+    private final int[] exitMark;
+    private int stamp = 0;
+    private final ExitQueue exits = new ExitQueue();
+
+    private int startCell;
+    private int endCell;
+    private float heur;
+    private float[] edgeCosts;
+    private boolean done;
+    private boolean found;
+
+    /**
+     * ExitQueue is a binary min heap of deferred climbs.  Each entry keeps the
+     * cell climbed to, its cost, and how it was reached; entries superseded by
+     * a cheaper exit are skipped when popped.
+     */
+    private static class ExitQueue {
+        private float[] key = new float[64];
+        private float[] g = new float[64];
+        private int[] cell = new int[64];
+        private int[] parent = new int[64];
+        private int[] from = new int[64];
+        private int[] corner = new int[64];
+        private int[] heap = new int[65];
+        private int count = 0;   // entries stored
+        private int size = 0;    // entries on the heap
+
+        void clear() { count = size = 0; }
+        boolean isEmpty() { return size == 0; }
+        float minKey() { return key[heap[1]]; }
+
+        void insert(float k, float cost, int c, int p, int f, int t) {
+            if(count == key.length) {
+                int n = 2 * count;
+                key = java.util.Arrays.copyOf(key, n);
+                g = java.util.Arrays.copyOf(g, n);
+                cell = java.util.Arrays.copyOf(cell, n);
+                parent = java.util.Arrays.copyOf(parent, n);
+                from = java.util.Arrays.copyOf(from, n);
+                corner = java.util.Arrays.copyOf(corner, n);
+                heap = java.util.Arrays.copyOf(heap, n + 1);
+            }
+            int e = count++;
+            key[e] = k; g[e] = cost; cell[e] = c; parent[e] = p; from[e] = f; corner[e] = t;
+            heap[++size] = e;
+            int x = size;
+            while(x > 1 && key[heap[x]] < key[heap[x/2]]) {
+                int tmp = heap[x]; heap[x] = heap[x/2]; heap[x/2] = tmp;
+                x = x/2;
+            }
+        }
+
+        int delMin() {
+            int min = heap[1];
+            heap[1] = heap[size--];
+            int x = 1;
+            while(2*x <= size) {
+                int y = 2*x;
+                if(y < size && key[heap[y+1]] < key[heap[y]]) y++;
+                if(!(key[heap[y]] < key[heap[x]])) break;
+                int tmp = heap[x]; heap[x] = heap[y]; heap[y] = tmp;
+                x = y;
+            }
+            return min;
+        }
+    }
+
+    public JumpPointSearch(Terrain terrain, SearchWorkspace ws) {
+        if(ws.getN() != terrain.getN()) throw new IllegalArgumentException("workspace size does not match terrain");
+        this.terrain = terrain;
+        this.ws = ws;
+        this.N = terrain.getN();
+        from = new int[N*N];
+        corner = new int[N*N];
+        exitG = new float[N*N];
+        exitMark = new int[N*N];
+    }
+
+    public void begin(int startCell, int endCell, float heur) {
+        this.startCell = startCell;
+        this.endCell = endCell;
+        this.heur = heur;
+        edgeCosts = terrain.getEdgeCostTable();
+        done = false;
+        found = false;
+        exits.clear();
+        if(++stamp == Integer.MAX_VALUE) {
+            java.util.Arrays.fill(exitMark, 0);
+            stamp = 1;
+        }
+        ws.useBinaryHeap();
+        ws.begin();
+        generate(startCell, 0, -1, -1, -1);
+    }
+
+    private float heuristic(int cell) {
+        if(heur == 0) return 0;
+        return heur * terrain.computeDistance(cell % N, cell / N, endCell % N, endCell / N);
+    }
+
+    // travel cost from cell in direction d, or +inf off the map
+    private float cost(int cell, int d) {
+        if(edgeCosts != null) return edgeCosts[cell*4 + d];
+        int i = cell % N, j = cell / N;
+        int ni = i + Terrain.DIR_I[d], nj = j + Terrain.DIR_J[d];
+        if(ni < 0 || nj < 0 || ni >= N || nj >= N) return Float.POSITIVE_INFINITY;
+        return terrain.computeTravelCost(i, j, ni, nj);
+    }
+
+    // true if the step from cell in direction d stays on the map at the same height
+    private boolean flat(int cell, int d) {
+        return cost(cell, d) == 1.0f;
+    }
+
+    private int move(int cell, int d) {
+        return cell + Terrain.DIR_I[d] + Terrain.DIR_J[d] * N;
+    }
+
+    private static boolean vertical(int d) { return d == UP || d == DOWN; }
+
+    // after a vertical step x -> y, a sideways neighbor of y is forced if the one beside x is blocked
+    private boolean forced(int x, int y) {
+        return (!flat(x, LEFT) && flat(y, LEFT)) || (!flat(x, RIGHT) && flat(y, RIGHT));
+    }
+
+    private void generate(int cell, float g, int parent, int climbFrom, int turn) {
+        ws.generate(cell, g, parent);
+        from[cell] = climbFrom;
+        corner[cell] = turn;
+        ((CellMinHeap) ws.open()).insertOrUpdate(cell, g + heuristic(cell));
+    }
+
+    private void relax(int origin, int cell, float g) {
+        if(ws.isClosed(cell)) return;
+        if(ws.isGenerated(cell) && g >= ws.getG(cell)) return;
+        generate(cell, g, origin, -1, -1);
+    }
+
+    // queues every climb out of cell, which was reached from origin (turning at turn) at cost g
+    private void offerExits(int cell, float g, int origin, int turn) {
+        for(int d = 0; d < 4; d++) {
+            float c = cost(cell, d);
+            if(c == 1.0f || c == Float.POSITIVE_INFINITY) continue;
+            int next = move(cell, d);
+            float ng = g + c;
+            if(ws.isClosed(next)) continue;
+            if(ws.isGenerated(next) && ng >= ws.getG(next)) continue;
+            if(exitMark[next] == stamp && ng >= exitG[next]) continue;
+            exitMark[next] = stamp;
+            exitG[next] = ng;
+            exits.insert(ng + heuristic(next), ng, next, origin, cell, turn);
+        }
+    }
+
+    // scans from origin in direction d, offering exits along the way, and
+    // generates the jump point the scan stops at, if any
+    private void jump(int origin, int d, float g) {
+        int x = origin;
+        while(flat(x, d)) {
+            int y = move(x, d);
+            g += 1.0f;
+            offerExits(y, g, origin, -1);
+            if(y == endCell) {
+                relax(origin, y, g);
+                return;
+            }
+            if(vertical(d)) {
+                if(forced(x, y)) {
+                    relax(origin, y, g);
+                    return;
+                }
+            } else {
+                boolean up = scan(y, UP, g, origin);
+                boolean down = scan(y, DOWN, g, origin);
+                if(up || down) {
+                    relax(origin, y, g);
+                    return;
+                }
+            }
+            x = y;
+        }
+    }
+
+    // vertical scan from turn, which a horizontal jump from origin reached at
+    // cost g; returns true if it runs into the goal or a forced neighbor
+    private boolean scan(int turn, int d, float g, int origin) {
+        int x = turn;
+        while(flat(x, d)) {
+            int y = move(x, d);
+            g += 1.0f;
+            offerExits(y, g, origin, turn);
+            if(y == endCell || forced(x, y)) return true;
+            x = y;
+        }
+        return false;
+    }
+
+    // direction of the straight run from the parent into cell
+    private int incoming(int cell) {
+        int p = ws.getParent(cell);
+        int di = Integer.signum(cell % N - p % N), dj = Integer.signum(cell / N - p / N);
+        for(int d = 0; d < 4; d++) {
+            if(Terrain.DIR_I[d] == di && Terrain.DIR_J[d] == dj) return d;
+        }
+        return -1;
+    }
+
+    private void expand(int cell) {
+        float g = ws.getG(cell);
+        if(ws.getParent(cell) == -1 || from[cell] != -1) {
+            // the start and cells entered by a climb search every direction
+            offerExits(cell, g, cell, -1);
+            for(int d = 0; d < 4; d++) jump(cell, d, g);
+            return;
+        }
+        int dIn = incoming(cell);
+        jump(cell, dIn, g);
+        if(vertical(dIn)) {
+            int behind = move(cell, Terrain.DIR_OPPOSITE[dIn]);
+            if(!flat(behind, LEFT) && flat(cell, LEFT)) jump(cell, LEFT, g);
+            if(!flat(behind, RIGHT) && flat(cell, RIGHT)) jump(cell, RIGHT, g);
+        } else {
+            jump(cell, UP, g);
+            jump(cell, DOWN, g);
+        }
+    }
+
+    public boolean step(int maxExpansions) {
+        final CellMinHeap open = (CellMinHeap) ws.open();
+        while(!done && maxExpansions-- > 0) {
+            if(!exits.isEmpty() && (open.isEmpty() || exits.minKey() < open.minKey())) {
+                int e = exits.delMin();
+                int cell = exits.cell[e];
+                float g = exits.g[e];
+                if(exitMark[cell] != stamp || exitG[cell] != g) continue;   // superseded
+                if(ws.isClosed(cell) || (ws.isGenerated(cell) && g >= ws.getG(cell))) continue;
+                generate(cell, g, exits.parent[e], exits.from[e], exits.corner[e]);
+                continue;
+            }
+            if(open.isEmpty()) {
+                done = true;
+                break;
+            }
+            int cell = open.delMin();
+            ws.close(cell);
+            if(cell == endCell) {
+                found = true;
+                done = true;
+                break;
+            }
+            expand(cell);
+        }
+        return done;
+    }
+
+    public boolean isDone() { return done; }
+    public boolean isFound() { return found; }
+
+    public float getPathCost() {
+        return ws.getG(endCell);
+    }
+
+    // appends the cells after a up to and including b, which share a row or column
+    private int fill(int[] path, int k, int a, int b) {
+        int step = Integer.signum(b % N - a % N) + Integer.signum(b / N - a / N) * N;
+        for(int x = a; x != b; ) {
+            x += step;
+            path[k++] = x;
+        }
+        return k;
+    }
+
+    // waypoints of the path from the end back to the start: each generated
+    // cell, plus the turn and climb cell of cells entered by a climb
+    private int waypoints(int[] out) {
+        int n = 0;
+        for(int c = endCell; c != -1; c = ws.getParent(c)) {
+            if(out != null) out[n] = c;
+            n++;
+            if(from[c] != -1) {
+                if(out != null) out[n] = from[c];
+                n++;
+                if(corner[c] != -1) {
+                    if(out != null) out[n] = corner[c];
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    public int[] extractPath() {
+        if(!found) return new int[0];
+        int[] wp = new int[waypoints(null)];
+        waypoints(wp);
+        int len = 1;
+        for(int k = wp.length - 1; k > 0; k--) {
+            len += Math.abs(wp[k] % N - wp[k-1] % N) + Math.abs(wp[k] / N - wp[k-1] / N);
+        }
+        int[] path = new int[len];
+        path[0] = wp[wp.length - 1];
+        int k = 1;
+        for(int w = wp.length - 1; w > 0; w--) k = fill(path, k, wp[w], wp[w-1]);
+        return path;
+    }
+
+    public int getSearchSize() { return ws.getGenerated(); }
+    public boolean wasSearched(int cell) { return ws.isGenerated(cell); }
+}
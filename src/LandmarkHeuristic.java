@@ -0,0 +1,224 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * LandmarkHeuristic is the ALT heuristic: for K landmark cells it stores the
+ * exact travel cost from the landmark to every cell, computed with one
+ * Dijkstra per landmark (run in parallel).  Travel costs are symmetric, so
+ * by the triangle inequality |d(L,t) - d(L,v)| never exceeds the cost from v
+ * to t, and the largest such bound over all landmarks is a consistent
+ * heuristic.  Unlike straight-line distance it accounts for the climbs a
+ * path cannot avoid.  Landmarks are spread evenly along the map's edge.
+ *
+ * The tables can be saved to and loaded from disk.  All values are
+ * little-endian:
+ *
+ * offset  size  field
+ * 0       4     magic "PFLM"
+ * 4       4     format version (1)
+ * 8       4     N
+ * 12      4     K
+ * 16      8     CRC32 of the terrain heights the tables were built from
+ * 24      4*K   landmark cells
+ * ...     4*K*N*N  costs, landmark by landmark, cell order i + j*N
+ *
+ * Editing the terrain makes the tables stale; isValid then returns false and
+ * the searches fall back to straight-line distance until rebuild is called.
+ */
+public class LandmarkHeuristic implements TerrainListener {
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 24;
+    private static final int MAGIC = 'P' | ('F' << 8) | ('L' << 16) | ('M' << 24);
+
+    private final Terrain terrain;
+    private final int N;
+    private final int[] landmarks;
+    private final float[][] dist;     // dist[k][cell]: cost between landmark k and cell
+    private volatile boolean valid;
+
+    private LandmarkHeuristic(Terrain terrain, int[] landmarks, float[][] dist) {
+        this.terrain = terrain;
+        this.N = terrain.getN();
+        this.landmarks = landmarks;
+        this.dist = dist;
+        this.valid = true;
+        terrain.addListener(this);
+    }
+
+    // places K landmarks along the edge of terrain and computes their tables
+    public static LandmarkHeuristic build(Terrain terrain, int K) {
+        if(K < 1) throw new IllegalArgumentException("need at least one landmark");
+        int N = terrain.getN();
+        int[] landmarks = new int[K];
+        int perimeter = Math.max(1, 4 * (N - 1));
+        for(int k = 0; k < K; k++) {
+            int p = (int)(((long) k * perimeter + perimeter / (2 * K)) / K);
+            landmarks[k] = edgeCell(N, p);
+        }
+        LandmarkHeuristic alt = new LandmarkHeuristic(terrain, landmarks, new float[K][]);
+        alt.rebuild();
+        return alt;
+    }
+
+    // cell at position p walking clockwise along the map's edge from (0,0)
+    private static int edgeCell(int N, int p) {
+        int s = N - 1;
+        if(s == 0) return 0;
+        if(p < s) return p;                                 // top row, left to right
+        if(p < 2*s) return s + (p - s) * N;                 // right column, downwards
+        if(p < 3*s) return (s - (p - 2*s)) + s * N;         // bottom row, right to left
+        return (s - (p - 3*s)) * N;                         // left column, upwards
+    }
+
+    // recomputes every table from the current terrain
+    public void rebuild() {
+        valid = true;
+        IntStream.range(0, landmarks.length).parallel().forEach(k -> dist[k] = costsFrom(landmarks[k]));
+    }
+
+    private float[] costsFrom(int cell) {
+        SearchWorkspace ws = new SearchWorkspace(N);
+        ws.useRadixHeap();
+        GridAStar dijkstra = new GridAStar(terrain, ws);
+        dijkstra.begin(cell, -1, 0);     // no end cell: runs until every cell is closed
+        dijkstra.run();
+        float[] d = new float[N*N];
+        for(int c = 0; c < N*N; c++) d[c] = ws.getG(c);
+        return d;
+    }
+
+    public void heightChanged(int i, int j) {
+        valid = false;
+    }
+
+    public void heightsChanged(int i0, int j0, int i1, int j1) {
+        valid = false;
+    }
+
+    // stops listening to the terrain
+    public void dispose() {
+        terrain.removeListener(this);
+    }
+
+    // false once the terrain was edited after the tables were built
+    public boolean isValid() { return valid; }
+
+    public Terrain getTerrain() { return terrain; }
+    public int getLandmarkCount() { return landmarks.length; }
+    public int getLandmark(int k) { return landmarks[k]; }
+
+    // lower bound on the travel cost between cell and target
+    public float estimate(int cell, int target) {
+        float best = 0;
+        for(float[] d : dist) {
+            float v = Math.abs(d[target] - d[cell]);
+            if(v > best) best = v;
+        }
+        return best;
+    }
+
+    private static long checksum(Terrain terrain) {
+        int N = terrain.getN();
+        ByteBuffer row = ByteBuffer.allocate(4 * N).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 crc = new CRC32();
+        for(int j = 0; j < N; j++) {
+            row.clear();
+            for(int i = 0; i < N; i++) row.putInt(terrain.getHeight(i, j));
+            row.flip();
+            crc.update(row);
+        }
+        return crc.getValue();
+    }
+
+    public void save(String filename) {
+        int K = landmarks.length;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + 4 * K).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(N).putInt(K).putLong(checksum(terrain));
+        for(int cell : landmarks) header.putInt(cell);
+        header.flip();
+
+        Path path = Paths.get(filename);
+        try(FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while(header.hasRemaining()) ch.write(header);
+            ByteBuffer data = ByteBuffer.allocate(4 * N * N).order(ByteOrder.LITTLE_ENDIAN);
+            for(float[] d : dist) {
+                data.clear();
+                data.asFloatBuffer().put(d);
+                data.limit(4 * N * N);
+                while(data.hasRemaining()) ch.write(data);
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException("could not write " + filename, e);
+        }
+    }
+
+    // loads tables saved for terrain; fails if they were built from other heights
+    public static LandmarkHeuristic load(String filename, Terrain terrain) {
+        Path path = TerrainFile.resolve(filename);
+        if(path == null) throw new IllegalArgumentException("could not find landmark file " + filename);
+        try(FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if(size < HEADER_SIZE || ch.read(header, 0) < HEADER_SIZE || header.getInt(0) != MAGIC)
+                throw new IllegalArgumentException(filename + " is not a landmark file");
+            int version = header.getInt(4);
+            if(version != VERSION) throw new IllegalArgumentException(filename + " has unsupported version " + version);
+            int N = header.getInt(8);
+            int K = header.getInt(12);
+            if(N != terrain.getN()) throw new IllegalArgumentException(filename + " was built for a " + N + "x" + N + " terrain");
+            if(K < 1) throw new IllegalArgumentException(filename + " has a corrupt header");
+            if(HEADER_SIZE + 4L * K + 4L * K * N * N > size) throw new IllegalArgumentException(filename + " is truncated");
+            if(header.getLong(16) != checksum(terrain)) throw new IllegalArgumentException(filename + " was built for different terrain heights");
+
+            ByteBuffer cells = ByteBuffer.allocate(4 * K).order(ByteOrder.LITTLE_ENDIAN);
+            ch.read(cells, HEADER_SIZE);
+            cells.flip();
+            int[] landmarks = new int[K];
+            cells.asIntBuffer().get(landmarks);
+
+            float[][] dist = new float[K][N*N];
+            long offset = HEADER_SIZE + 4L * K;
+            for(int k = 0; k < K; k++) {
+                MappedByteBuffer data = ch.map(FileChannel.MapMode.READ_ONLY, offset + 4L * k * N * N, 4L * N * N);
+                data.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(dist[k]);
+            }
+            return new LandmarkHeuristic(terrain, landmarks, dist);
+        } catch(IOException e) {
+            throw new UncheckedIOException("could not read " + filename, e);
+        }
+    }
+
+    // builds tables for each map and saves them next to it as <map>.alt
+    // usage: java LandmarkHeuristic [-k landmarks] file.emap ...
+    public static void main(String[] args) {
+        int K = 8;
+        int a = 0;
+        if(args.length >= 2 && args[0].equals("-k")) {
+            K = Integer.parseInt(args[1]);
+            a = 2;
+        }
+        if(a >= args.length) {
+            StdOut.println("usage: java LandmarkHeuristic [-k landmarks] file.emap ...");
+            return;
+        }
+        for(; a < args.length; a++) {
+            Terrain terrain = new Terrain(args[a]);
+            Stopwatch sw = new Stopwatch();
+            LandmarkHeuristic alt = build(terrain, K);
+            double build = sw.elapsedTime();
+            alt.save(args[a] + ".alt");
+            sw = new Stopwatch();
+            load(args[a] + ".alt", terrain);
+            StdOut.printf("%s: %d landmarks built in %.2fs, loaded in %.2fs%n", args[a], K, build, sw.elapsedTime());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+import java.nio.ByteBuffer;
+
+/**
+ * MappedHeightStore reads heights straight out of a read-only mapped
+ * TerrainFile, row-major, 8, 16 or 32 bits per height.  Nothing is copied
+ * onto the heap, and processes mapping the same file share its pages.
+ */
+public class MappedHeightStore extends HeightStore {
+    private final ByteBuffer data;
+    private final int bitDepth;
+
+    public MappedHeightStore(int N, int bitDepth, ByteBuffer data) {
+        super(N, Layout.ROW_MAJOR);
+        if(bitDepth != 8 && bitDepth != 16 && bitDepth != 32) throw new IllegalArgumentException("unsupported bit depth " + bitDepth);
+        if(data.capacity() < (long) N * N * (bitDepth / 8)) throw new IllegalArgumentException("height data is truncated");
+        this.bitDepth = bitDepth;
+        this.data = data;
+    }
+
+    public int get(int i, int j) {
+        int k = i + j * N;
+        switch(bitDepth) {
+            case 8:  return data.get(k) & 0xff;
+            case 16: return data.getShort(2 * k);
+            default: return data.getInt(4 * k);
+        }
+    }
+
+    public void set(int i, int j, int h) {
+        throw new UnsupportedOperationException("mapped terrain is read-only; load it into a heap store to edit it");
+    }
+
+    public int getMinHeight() { return bitDepth == 8 ? 0 : bitDepth == 16 ? Short.MIN_VALUE : Integer.MIN_VALUE; }
+    public int getMaxHeight() { return bitDepth == 8 ? 255 : bitDepth == 16 ? Short.MAX_VALUE : Integer.MAX_VALUE; }
+    public int getBitDepth() { return bitDepth; }
+}
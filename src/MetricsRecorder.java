@@ -0,0 +1,147 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MetricsRecorder is a SearchListener that aggregates the queries of any
+ * number of Pathfinders (from any threads) into counters and histograms.
+ * Histograms have power-of-two buckets: bucket b counts values in
+ * [2^(b-1), 2^b), and bucket 0 the zeros.  scrape renders everything in the
+ * Prometheus text format, with each bucket's upper bound as its le label.
+ */
+public class MetricsRecorder implements SearchListener {
+    private final LongAdder[] queries = new LongAdder[Pathfinder.SearchMode.values().length];
+    private final LongAdder found = new LongAdder();
+    private final LongAdder cached = new LongAdder();
+    private final Histogram searchNanos = new Histogram();
+    private final Histogram pathNanos = new Histogram();
+    private final Histogram allocatedBytes = new Histogram();
+    private final Histogram searchSize = new Histogram();
+    private final Histogram peakOpenSize = new Histogram();
+    private final Histogram pops = new Histogram();
+    private final LongAdder pushes = new LongAdder();
+    private final LongAdder reExpansions = new LongAdder();
+    private final LongAdder heuristicEvaluations = new LongAdder();
+
+    /**
+     * Histogram is a lock-free histogram of non-negative longs with 64
+     * power-of-two buckets.
+     */
+    public static class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(65);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        // negative values mean "not measured" and are ignored
+        public void record(long v) {
+            if(v < 0) return;
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(v));
+            count.increment();
+            sum.add(v);
+            max.accumulate(v);
+        }
+
+        public long getCount() { return count.sum(); }
+        public long getSum() { return sum.sum(); }
+        public long getMax() { return max.get(); }
+        public double getMean() {
+            long n = getCount();
+            return n == 0 ? 0 : (double) getSum() / n;
+        }
+
+        // upper bound of the bucket holding the q-th quantile (0 <= q <= 1)
+        public long getQuantile(double q) {
+            long n = getCount();
+            if(n == 0) return 0;
+            long rank = (long) Math.ceil(q * n), seen = 0;
+            for(int b = 0; b < 65; b++) {
+                seen += buckets.get(b);
+                if(seen >= Math.max(rank, 1)) return Math.min(upperBound(b), getMax());
+            }
+            return getMax();
+        }
+
+        private static long upperBound(int b) {
+            return b == 0 ? 0 : b >= 63 ? Long.MAX_VALUE : (1L << b) - 1;
+        }
+
+        void writeTo(StringBuilder out, String name, String help) {
+            out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            out.append("# TYPE ").append(name).append(" histogram\n");
+            long cumulative = 0;
+            int last = 64;
+            while(last > 0 && buckets.get(last) == 0) last--;
+            for(int b = 0; b <= last; b++) {
+                cumulative += buckets.get(b);
+                out.append(name).append("_bucket{le=\"").append(upperBound(b)).append("\"} ").append(cumulative).append('\n');
+            }
+            out.append(name).append("_bucket{le=\"+Inf\"} ").append(getCount()).append('\n');
+            out.append(name).append("_sum ").append(getSum()).append('\n');
+            out.append(name).append("_count ").append(getCount()).append('\n');
+        }
+    }
+
+    public MetricsRecorder() {
+        for(int m = 0; m < queries.length; m++) queries[m] = new LongAdder();
+    }
+
+    public void searchFinished(SearchMetrics m) {
+        queries[m.getMode().ordinal()].increment();
+        if(m.foundPath()) found.increment();
+        if(m.isCached()) cached.increment();
+        searchNanos.record(m.getSearchNanos());
+        pathNanos.record(m.getPathNanos());
+        allocatedBytes.record(m.getAllocatedBytes());
+        searchSize.record(m.getSearchSize());
+        peakOpenSize.record(m.getPeakOpenSize());
+        pops.record(m.getPops());
+        if(m.getPushes() > 0) pushes.add(m.getPushes());
+        if(m.getReExpansions() > 0) reExpansions.add(m.getReExpansions());
+        if(m.getHeuristicEvaluations() > 0) heuristicEvaluations.add(m.getHeuristicEvaluations());
+    }
+
+    public long getQueries() {
+        long n = 0;
+        for(LongAdder q : queries) n += q.sum();
+        return n;
+    }
+    public long getQueries(Pathfinder.SearchMode mode) { return queries[mode.ordinal()].sum(); }
+    public long getFound() { return found.sum(); }
+    public long getCached() { return cached.sum(); }
+
+    public Histogram getSearchNanos() { return searchNanos; }
+    public Histogram getPathNanos() { return pathNanos; }
+    public Histogram getAllocatedBytes() { return allocatedBytes; }
+    public Histogram getSearchSize() { return searchSize; }
+    public Histogram getPeakOpenSize() { return peakOpenSize; }
+    public Histogram getPops() { return pops; }
+
+    // all counters and histograms in the Prometheus text exposition format
+    public String scrape() {
+        StringBuilder out = new StringBuilder();
+        out.append("# HELP pathfinder_queries_total Path queries answered.\n");
+        out.append("# TYPE pathfinder_queries_total counter\n");
+        for(Pathfinder.SearchMode mode : Pathfinder.SearchMode.values()) {
+            out.append("pathfinder_queries_total{mode=\"").append(mode).append("\"} ").append(getQueries(mode)).append('\n');
+        }
+        counter(out, "pathfinder_found_total", "Queries that found a path.", getFound());
+        counter(out, "pathfinder_cached_total", "Queries answered through a PathCache.", getCached());
+        counter(out, "pathfinder_pushes_total", "Open list inserts and key updates.", pushes.sum());
+        counter(out, "pathfinder_reexpansions_total", "Cells expanded more than once in a query.", reExpansions.sum());
+        counter(out, "pathfinder_heuristic_evaluations_total", "Heuristic evaluations.", heuristicEvaluations.sum());
+        searchNanos.writeTo(out, "pathfinder_search_nanoseconds", "Search phase time per query.");
+        pathNanos.writeTo(out, "pathfinder_path_nanoseconds", "Path reconstruction time per query.");
+        allocatedBytes.writeTo(out, "pathfinder_allocated_bytes", "Bytes allocated per query.");
+        searchSize.writeTo(out, "pathfinder_search_size_cells", "Cells generated per query.");
+        peakOpenSize.writeTo(out, "pathfinder_peak_open_cells", "Largest open list per query.");
+        pops.writeTo(out, "pathfinder_pops", "Open list removals per query.");
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+}
@@ -0,0 +1,13 @@
+/**
+ * OpenList is the priority queue of frontier cells used by the grid searches.
+ * Cells are flat indices (cell = i + j * N).  insertOrUpdate either adds a
+ * cell or changes the key of a cell already on the list; delMin never returns
+ * the same cell twice without it being inserted again.
+ */
+public interface OpenList {
+    void insertOrUpdate(int cell, float key);
+    int delMin();
+    boolean isEmpty();
+    int size();
+    void clear();
+}
@@ -0,0 +1,130 @@
+import java.util.Arrays;
+
+/**
+ * OpenListBenchmark times Dijkstra searches (heuristic 0) from (1,1) to
+ * (N-3,N-3) with each open list strategy, including an algs4 MinPQ with one
+ * entry object per insert as the original Pathfinder used.  Every cost is
+ * checked against the binary heap's.
+ *
+ * Without arguments it first runs a generated map, "terraces", whose flat
+ * corridors run on for far longer than the bucket queue's window between
+ * climbs, so entries wait in its overflow while the window passes them.
+ *
+ * usage: java OpenListBenchmark [emap ...]
+ */
+public class OpenListBenchmark {
+    private static final String TERRACES = "terraces";
+    private static final String[] DEFAULT_EMAPS = {
+            TERRACES, "maze32_0.png.emap", "maze232_0.png.emap", "maze320_0.png.emap", "mazeAB.png.emap",
+            "usa128.png.emap", "usa256.png.emap", "usa1024.png.emap",
+    };
+    private static final int WARMUP = 3;
+    private static final int RUNS = 5;
+
+    // lazy-deletion adapter over algs4's MinPQ
+    private static class MinPQOpenList implements OpenList {
+        private static class Entry implements Comparable<Entry> {
+            final int cell;
+            final float key;
+            Entry(int cell, float key) { this.cell = cell; this.key = key; }
+            public int compareTo(Entry that) { return Float.compare(key, that.key); }
+        }
+        private MinPQ<Entry> pq = new MinPQ<>();
+        private final float[] current;
+        private final boolean[] queued;
+        private int size = 0;
+
+        MinPQOpenList(int capacity) {
+            current = new float[capacity];
+            queued = new boolean[capacity];
+        }
+        public void insertOrUpdate(int cell, float key) {
+            if(queued[cell] && current[cell] == key) return;
+            if(!queued[cell]) size++;
+            queued[cell] = true;
+            current[cell] = key;
+            pq.insert(new Entry(cell, key));
+        }
+        public int delMin() {
+            while(true) {
+                Entry e = pq.delMin();
+                if(!queued[e.cell] || current[e.cell] != e.key) continue;
+                queued[e.cell] = false;
+                size--;
+                return e.cell;
+            }
+        }
+        public boolean isEmpty() { return size == 0; }
+        public int size() { return size; }
+        public void clear() {
+            for(Entry e : pq) queued[e.cell] = false;
+            pq = new MinPQ<>();
+            size = 0;
+        }
+    }
+
+    private static double time(GridAStar search, SearchWorkspace ws, int s, int e) {
+        for(int r = 0; r < WARMUP; r++) {
+            search.begin(s, e, 0);
+            search.run();
+        }
+        Stopwatch sw = new Stopwatch();
+        for(int r = 0; r < RUNS; r++) {
+            search.begin(s, e, 0);
+            search.run();
+        }
+        return sw.elapsedTime() * 1000.0 / RUNS;
+    }
+
+    // 1-wide serpentine corridors between walls of height 255: the top quarter at height 0,
+    // the rest at height 1 and reached by a climb next to the start, and a channel at height 1
+    // down the right edge that a climb at the far end of the top quarter leads into; the
+    // channel is the shorter way to the end, (N-3,N-2), at the end of the lower corridors
+    private static Terrain terraces(int N) {
+        int[][] h = new int[N][N];
+        for(int i = 0; i < N; i++) Arrays.fill(h[i], 255);
+        int split = N / 4;
+        for(int j = 0; j < N - 1; j += 2) {
+            int level = j < split ? 0 : 1;
+            for(int i = 0; i < N - 2; i++) h[i][j] = level;
+            if(j + 1 < N - 1 && j + 1 != split - 1) h[(j/2) % 2 == 0 ? N - 3 : 0][j + 1] = level;
+        }
+        h[0][split - 1] = 1;
+        for(int j = 0; j < N; j++) h[N - 1][j] = 1;
+        h[N - 2][0] = 1;
+        h[N - 2][N - 2] = 1;
+        return new Terrain(h);
+    }
+
+    public static void main(String[] args) {
+        String[] emaps = args.length > 0 ? args : DEFAULT_EMAPS;
+        StdOut.printf("%-20s %-14s %10s %10s %14s%n", "map", "open list", "cost", "ms/query", "cells/s");
+        for(String emap : emaps) {
+            boolean generated = emap.equals(TERRACES);
+            Terrain terrain = generated ? terraces(256) : new Terrain(emap);
+            int N = terrain.getN();
+            SearchWorkspace ws = new SearchWorkspace(N);
+            GridAStar search = new GridAStar(terrain, ws);
+            int s = generated ? ws.cell(0, N/4 - 2) : ws.cell(1, 1);
+            int e = generated ? ws.cell(N-3, N-2) : ws.cell(N-3, N-3);
+            float expected = Float.NaN;
+
+            String[] names = { "MinPQ", "binary heap", "radix heap", "bucket queue" };
+            OpenList[] lists = {
+                    new MinPQOpenList(N*N),
+                    new CellMinHeap(N*N),
+                    new RadixHeapOpenList(N*N),
+                    new BucketOpenList(N*N, 1.0f, 4096),
+            };
+            for(int k = 0; k < lists.length; k++) {
+                ws.useOpenList(lists[k]);
+                double ms = time(search, ws, s, e);
+                float cost = search.getPathCost();
+                if(k == 1) expected = cost;
+                StdOut.printf("%-20s %-14s %10.1f %10.2f %14.0f%s%n",
+                        emap, names[k], cost, ms, ws.getGenerated() / (ms / 1000.0),
+                        k > 1 && cost != expected ? "  differs from the binary heap" : "");
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * PackedPath is an immutable path stored as primitive arrays: the cells from
+ * start to end (cell = i + j*N) and, alongside, the cost of travelling from
+ * the start to each of them.  Costs are summed in float step by step from
+ * the start, the way GridAStar accumulates them, so the last one matches the
+ * cost it reports.
+ *
+ * Cells can be read by index or with a Cursor, which steps through the path
+ * without allocating.  As an Iterable<Coord>, or through asList, it creates
+ * a Coord per cell on demand, for code written against the older API.
+ */
+public final class PackedPath implements Iterable<Coord> {
+    public static final PackedPath EMPTY = new PackedPath(1, new int[0], new float[0]);
+
+    private final int N;
+    private final int[] cells;
+    private final float[] costs;    // costs[k]: cost from cells[0] to cells[k]
+
+    private PackedPath(int N, int[] cells, float[] costs) {
+        this.N = N;
+        this.cells = cells;
+        this.costs = costs;
+    }
+
+    // path over terrain through the given cells (start first); the array is copied
+    public static PackedPath of(Terrain terrain, int[] cells) {
+        return adopt(terrain, cells.clone());
+    }
+
+    // like of, but keeps cells, which the caller must not change afterwards
+    static PackedPath adopt(Terrain terrain, int[] cells) {
+        int N = terrain.getN();
+        float[] costs = new float[cells.length];
+        for(int k = 1; k < cells.length; k++) {
+            int a = cells[k-1], b = cells[k];
+            costs[k] = costs[k-1] + terrain.computeTravelCost(a % N, a / N, b % N, b / N);
+        }
+        return new PackedPath(N, cells, costs);
+    }
+
+    // packs any sequence of Coords
+    public static PackedPath of(Terrain terrain, Iterable<Coord> path) {
+        if(path instanceof PackedPath) return (PackedPath) path;
+        int N = terrain.getN();
+        int[] cells = new int[16];
+        int n = 0;
+        for(Coord c : path) {
+            if(n == cells.length) cells = Arrays.copyOf(cells, 2*n);
+            cells[n++] = c.getI() + c.getJ() * N;
+        }
+        return adopt(terrain, Arrays.copyOf(cells, n));
+    }
+
+    public int size() { return cells.length; }
+    public boolean isEmpty() { return cells.length == 0; }
+
+    public int getCell(int k) { return cells[k]; }
+    public int getI(int k) { return cells[k] % N; }
+    public int getJ(int k) { return cells[k] / N; }
+    public Coord get(int k) { return new Coord(getI(k), getJ(k)); }
+
+    // cost from the start to cell k
+    public float getCost(int k) { return costs[k]; }
+
+    // cost of the whole path, 0 if it is empty
+    public float getTotalCost() { return cells.length == 0 ? 0 : costs[cells.length - 1]; }
+
+    // copy of the cells, start first
+    public int[] toCellArray() { return cells.clone(); }
+
+    /**
+     * Cursor walks a PackedPath from start to end.  Call next to move onto
+     * the first or following cell; i, j, cell and cost describe the current
+     * one.  Nothing is allocated after the Cursor itself.
+     */
+    public final class Cursor {
+        private int k = -1;
+
+        public boolean hasNext() { return k + 1 < cells.length; }
+
+        public void next() {
+            if(!hasNext()) throw new NoSuchElementException("end of path");
+            k++;
+        }
+
+        public int index() { return k; }
+        public int cell() { return cells[k]; }
+        public int i() { return cells[k] % N; }
+        public int j() { return cells[k] / N; }
+        public float cost() { return costs[k]; }
+
+        // back to before the first cell
+        public void reset() { k = -1; }
+    }
+
+    public Cursor cursor() { return new Cursor(); }
+
+    public Iterator<Coord> iterator() {
+        return new Iterator<Coord>() {
+            private int k = 0;
+            public boolean hasNext() { return k < cells.length; }
+            public Coord next() {
+                if(!hasNext()) throw new NoSuchElementException("end of path");
+                return get(k++);
+            }
+        };
+    }
+
+    // read-only List view; each get creates a Coord
+    public List<Coord> asList() {
+        return new CoordList();
+    }
+
+    private final class CoordList extends AbstractList<Coord> implements RandomAccess {
+        public Coord get(int k) { return PackedPath.this.get(k); }
+        public int size() { return cells.length; }
+    }
+
+    public String toString() {
+        return cells.length + " cells, cost " + getTotalCost();
+    }
+}
@@ -0,0 +1,202 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * PagedHeightStore leaves a tiled terrain file (see TiledTerrainFile) on
+ * disk and reads its tiles in on demand with positional reads, decoding
+ * them into a cache of at most cacheTiles tiles that evicts the least
+ * recently used one.  Memory use is bounded by the cache, not the map, so
+ * the map can be far larger than the heap.  A store opened for writing
+ * marks the tiles it sets as dirty and writes them back when they are
+ * evicted, on flush and on close.
+ *
+ * get and set are synchronized, since even a read can load and evict
+ * tiles: threads can share the store but take turns.  The cache counts
+ * hits, misses and evictions.
+ */
+public class PagedHeightStore extends HeightStore implements Closeable {
+    private final FileChannel channel;
+    private final boolean writable;
+    private final int bitDepth;
+    private final int shift, mask;        // tiles are (1 << shift) cells on a side
+    private final int tilesPerRow;
+    private final long dataOffset;
+    private final ByteBuffer io;          // one tile as stored in the file
+
+    private final int[] slotOfTile;       // cache slot holding each tile, -1 if not cached
+    private final int[] tileOfSlot;
+    private final int[][] slots;          // decoded tiles, allocated as the cache fills
+    private final boolean[] dirty;
+    private final int[] newer, older;     // the slots in use, most recently used first
+    private int head = -1, tail = -1, used;
+    private long hits, misses, evictions;
+
+    PagedHeightStore(FileChannel channel, boolean writable, int N, int bitDepth, int tileSide, long dataOffset, int cacheTiles) {
+        super(N, Layout.TILED);
+        if(bitDepth != 8 && bitDepth != 16 && bitDepth != 32) throw new IllegalArgumentException("unsupported bit depth " + bitDepth);
+        if(tileSide < 1 || Integer.bitCount(tileSide) != 1) throw new IllegalArgumentException("the tile side must be a power of two");
+        if(cacheTiles < 1) throw new IllegalArgumentException("the cache needs room for at least one tile");
+        this.channel = channel;
+        this.writable = writable;
+        this.bitDepth = bitDepth;
+        this.shift = Integer.numberOfTrailingZeros(tileSide);
+        this.mask = tileSide - 1;
+        this.tilesPerRow = (N + mask) >> shift;
+        this.dataOffset = dataOffset;
+        io = ByteBuffer.allocate(tileSide * tileSide * (bitDepth / 8)).order(ByteOrder.LITTLE_ENDIAN);
+
+        int tiles = tilesPerRow * tilesPerRow;
+        cacheTiles = Math.min(cacheTiles, Math.max(1, tiles));
+        slotOfTile = new int[tiles];
+        Arrays.fill(slotOfTile, -1);
+        tileOfSlot = new int[cacheTiles];
+        slots = new int[cacheTiles][];
+        dirty = new boolean[cacheTiles];
+        newer = new int[cacheTiles];
+        older = new int[cacheTiles];
+    }
+
+    public synchronized int get(int i, int j) {
+        int[] tile = slots[slot((i >> shift) + (j >> shift) * tilesPerRow)];
+        return tile[((j & mask) << shift) + (i & mask)];
+    }
+
+    public synchronized void set(int i, int j, int h) {
+        if(!writable) throw new UnsupportedOperationException("tiled terrain was opened read-only");
+        int s = slot((i >> shift) + (j >> shift) * tilesPerRow);
+        slots[s][((j & mask) << shift) + (i & mask)] = h;
+        dirty[s] = true;
+    }
+
+    public int getMinHeight() { return bitDepth == 8 ? 0 : bitDepth == 16 ? Short.MIN_VALUE : Integer.MIN_VALUE; }
+    public int getMaxHeight() { return bitDepth == 8 ? 255 : bitDepth == 16 ? Short.MAX_VALUE : Integer.MAX_VALUE; }
+    public int getBitDepth() { return bitDepth; }
+
+    public boolean isPaged() { return true; }
+    public boolean isWritable() { return writable; }
+    public int getTileSide() { return mask + 1; }
+    public int getCacheTiles() { return slots.length; }
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+
+    // fraction of tile lookups served from the cache, 0 before any
+    public synchronized double getHitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    public synchronized void resetStatistics() {
+        hits = misses = evictions = 0;
+    }
+
+    // writes every dirty tile back to the file
+    public synchronized void flush() {
+        for(int s = 0; s < used; s++) {
+            if(dirty[s]) writeBack(s);
+        }
+    }
+
+    // flushes and closes the file; the store must not be used afterwards
+    public synchronized void close() {
+        if(!channel.isOpen()) return;
+        try {
+            if(writable) flush();
+        } finally {
+            try {
+                channel.close();
+            } catch(IOException e) {
+                throw new UncheckedIOException("could not close tiled terrain", e);
+            }
+        }
+    }
+
+    public synchronized String toString() {
+        return String.format("PagedHeightStore N=%d, %dx%d tiles, %d/%d cached: %d hits, %d misses (%.2f%%), %d evicted",
+                N, mask + 1, mask + 1, used, slots.length, hits, misses, 100 * getHitRate(), evictions);
+    }
+
+    // the cache slot holding tile t, reading it in (and evicting the least recently used tile) if needed
+    private int slot(int t) {
+        int s = slotOfTile[t];
+        if(s >= 0) {
+            hits++;
+            if(s != head) {
+                unlink(s);
+                pushFront(s);
+            }
+            return s;
+        }
+        misses++;
+        if(used < slots.length) {
+            s = used++;
+            slots[s] = new int[(mask + 1) * (mask + 1)];
+        } else {
+            s = tail;
+            if(dirty[s]) writeBack(s);
+            slotOfTile[tileOfSlot[s]] = -1;
+            unlink(s);
+            evictions++;
+        }
+        read(t, slots[s]);
+        slotOfTile[t] = s;
+        tileOfSlot[s] = t;
+        dirty[s] = false;
+        pushFront(s);
+        return s;
+    }
+
+    private void unlink(int s) {
+        if(newer[s] >= 0) older[newer[s]] = older[s];
+        else head = older[s];
+        if(older[s] >= 0) newer[older[s]] = newer[s];
+        else tail = newer[s];
+    }
+
+    private void pushFront(int s) {
+        newer[s] = -1;
+        older[s] = head;
+        if(head >= 0) newer[head] = s;
+        head = s;
+        if(tail < 0) tail = s;
+    }
+
+    private void read(int t, int[] tile) {
+        io.clear();
+        try {
+            long position = dataOffset + (long) t * io.capacity();
+            while(io.hasRemaining()) {
+                if(channel.read(io, position + io.position()) < 0) throw new IllegalStateException("tiled terrain is truncated");
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException("could not read tile " + t, e);
+        }
+        switch(bitDepth) {
+            case 8:  for(int k = 0; k < tile.length; k++) tile[k] = io.get(k) & 0xff; break;
+            case 16: for(int k = 0; k < tile.length; k++) tile[k] = io.getShort(2 * k); break;
+            default: for(int k = 0; k < tile.length; k++) tile[k] = io.getInt(4 * k);
+        }
+    }
+
+    private void writeBack(int s) {
+        int[] tile = slots[s];
+        switch(bitDepth) {
+            case 8:  for(int k = 0; k < tile.length; k++) io.put(k, (byte) tile[k]); break;
+            case 16: for(int k = 0; k < tile.length; k++) io.putShort(2 * k, (short) tile[k]); break;
+            default: for(int k = 0; k < tile.length; k++) io.putInt(4 * k, tile[k]);
+        }
+        io.clear();
+        try {
+            long position = dataOffset + (long) tileOfSlot[s] * io.capacity();
+            while(io.hasRemaining()) channel.write(io, position + io.position());
+        } catch(IOException e) {
+            throw new UncheckedIOException("could not write tile " + tileOfSlot[s], e);
+        }
+        dirty[s] = false;
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * PathCache sits in front of a PathQueryEngine and remembers the last
+ * capacity PathResults, evicting the least recently used one.  It is safe to
+ * share between threads; a miss runs its query outside the lock, so misses
+ * on different threads still search in parallel.
+ *
+ * An answer depends only on the edges of the cells its search generated: an
+ * edit anywhere else cannot make a cheaper path, since just reaching the
+ * edit would cost more than the path found (for heuristic values above 1,
+ * more than the path's cost divided by the heuristic, so the answer keeps
+ * its bound).  So when the terrain reports an edited cell, only the entries
+ * whose generated cells' bounding box contains it are dropped.  Each answer
+ * is tagged with the terrain version its search started at, and is not
+ * stored if the terrain changed while it ran.
+ */
+public final class PathCache implements TerrainListener {
+    private final PathQueryEngine engine;
+    private final Terrain terrain;
+    private final int capacity;
+    private final LinkedHashMap<PathQuery, PathResult> entries;
+    private long hits, misses, invalidations;
+
+    public PathCache(PathQueryEngine engine, int capacity) {
+        if(engine == null) throw new IllegalArgumentException("engine is null");
+        if(capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        this.engine = engine;
+        this.terrain = engine.getTerrain();
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<PathQuery, PathResult>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<PathQuery, PathResult> eldest) {
+                return size() > PathCache.this.capacity;
+            }
+        };
+        terrain.addListener(this);
+    }
+
+    // stops listening to the terrain; the cache must not be used afterwards
+    public void dispose() {
+        terrain.removeListener(this);
+    }
+
+    public Terrain getTerrain() { return terrain; }
+
+    public PathResult query(Coord start, Coord end, float heuristic) {
+        return query(new PathQuery(start, end, heuristic));
+    }
+
+    // the cached answer to q, or a fresh one (which is then cached)
+    public PathResult query(PathQuery q) {
+        long version;
+        synchronized(this) {
+            PathResult cached = entries.get(q);
+            if(cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+            version = terrain.getVersion();
+        }
+        PathResult result = engine.query(q);
+        synchronized(this) {
+            // an edit during the search may already have been reported, so this answer can't be trusted
+            if(terrain.getVersion() == version) entries.put(q, result);
+        }
+        return result;
+    }
+
+    public synchronized void heightChanged(int i, int j) {
+        Iterator<PathResult> it = entries.values().iterator();
+        while(it.hasNext()) {
+            if(it.next().searchTouches(i, j)) {
+                it.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    public synchronized void heightsChanged(int i0, int j0, int i1, int j1) {
+        Iterator<PathResult> it = entries.values().iterator();
+        while(it.hasNext()) {
+            if(it.next().searchTouches(i0, j0, i1, j1)) {
+                it.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    public synchronized void clear() { entries.clear(); }
+
+    public int getCapacity() { return capacity; }
+    public synchronized int size() { return entries.size(); }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+
+    // entries dropped because an edit touched their search
+    public synchronized long getInvalidations() { return invalidations; }
+
+    public synchronized String toString() {
+        return "PathCache " + entries.size() + "/" + capacity + ": " + hits + " hits, " + misses + " misses, " + invalidations + " invalidated";
+    }
+}
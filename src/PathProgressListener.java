@@ -0,0 +1,12 @@
+/**
+ * PathProgressListener follows a query submitted to a PathQueryEngine.
+ * progress is called after every slice of the search with the number of
+ * cells generated so far, and finished with the answer unless the task was
+ * cancelled first.  Both run on the thread doing the search, so they should
+ * return quickly and hand anything slow to another thread.
+ */
+public interface PathProgressListener {
+    void progress(PathQuery query, int searchSize);
+
+    default void finished(PathResult result) { }
+}
@@ -0,0 +1,34 @@
+/**
+ * PathQuery is an immutable request for a path from start to end with the
+ * given heuristic value, as answered by PathQueryEngine.  Equal queries
+ * are interchangeable, so a PathQuery can key a PathCache.
+ */
+public final class PathQuery {
+    private final Coord start;
+    private final Coord end;
+    private final float heuristic;
+
+    public PathQuery(Coord start, Coord end, float heuristic) {
+        if(start == null || end == null) throw new IllegalArgumentException("start and end must not be null");
+        this.start = start;
+        this.end = end;
+        this.heuristic = heuristic;
+    }
+
+    public Coord getStart() { return start; }
+    public Coord getEnd() { return end; }
+    public float getHeuristic() { return heuristic; }
+
+    public String toString() { return start + "->" + end + " h=" + heuristic; }
+
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || o.getClass() != getClass()) return false;
+        PathQuery that = (PathQuery) o;
+        return start.equals(that.start) && end.equals(that.end) && Float.compare(heuristic, that.heuristic) == 0;
+    }
+
+    public int hashCode() {
+        return 31 * (31 * start.hashCode() + end.hashCode()) + Float.hashCode(heuristic);
+    }
+}
@@ -0,0 +1,210 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PathQueryEngine answers PathQuerys over a Terrain from any number of
+ * threads at once.  The engine itself holds no per-query state: a query
+ * borrows a SearchWorkspace and GridAStar from the engine's pool (making one
+ * if none is idle) and hands it back when done, and returns a self-contained
+ * PathResult.  The pool keeps at most one idle search per core, so the
+ * workspaces are reused by later queries from any thread but never outlive
+ * the engine in some caller's threads.  queryAll without a pool runs on an
+ * executor the engine keeps for the next batch.  close releases both.
+ *
+ * The terrain must not be edited while queries run.  The edge cost table and
+ * the landmark tables (if any) are built once, up front, and then only read.
+ * Like Pathfinder's AUTO setting, heuristic 0 queries use a radix heap and
+ * the others a binary heap.
+ *
+ * submit runs a query in the background instead: it returns a PathTask at
+ * once, which can be cancelled, and reports progress to a
+ * PathProgressListener as the search goes.
+ */
+public final class PathQueryEngine implements AutoCloseable {
+    private static final int SLICE = 4096;     // expansions between cancellation checks
+
+    private final Terrain terrain;
+    private final LandmarkHeuristic landmarks;
+    private final int cores = Runtime.getRuntime().availableProcessors();
+    private final ConcurrentLinkedQueue<GridAStar> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private ExecutorService executor;          // queryAll's own threads, made on first use
+    private volatile boolean closed = false;
+
+    public PathQueryEngine(Terrain terrain) {
+        this(terrain, null);
+    }
+
+    public PathQueryEngine(Terrain terrain, LandmarkHeuristic landmarks) {
+        if(terrain == null) throw new IllegalArgumentException("terrain is null");
+        if(landmarks != null && landmarks.getTerrain() != terrain) throw new IllegalArgumentException("landmarks belong to another terrain");
+        this.terrain = terrain;
+        this.landmarks = landmarks;
+        terrain.getEdgeCostTable();
+    }
+
+    public Terrain getTerrain() { return terrain; }
+
+    // an idle search from the pool, or a new one
+    private GridAStar borrow() {
+        if(closed) throw new IllegalStateException("the engine is closed");
+        GridAStar search = idle.poll();
+        if(search != null) {
+            idleCount.decrementAndGet();
+            return search;
+        }
+        search = new GridAStar(terrain, new SearchWorkspace(terrain.getN()));
+        search.setLandmarks(landmarks);
+        return search;
+    }
+
+    // back to the pool, unless it already holds one per core or the engine is closed
+    private void release(GridAStar search) {
+        if(closed || idleCount.incrementAndGet() > cores) {
+            idleCount.decrementAndGet();
+            return;
+        }
+        idle.offer(search);
+    }
+
+    // drops the idle searches and stops queryAll's threads; queries still running finish,
+    // later ones throw IllegalStateException
+    public void close() {
+        closed = true;
+        while(idle.poll() != null) idleCount.decrementAndGet();
+        synchronized(this) {
+            if(executor != null) executor.shutdown();
+            executor = null;
+        }
+    }
+
+    public PathResult query(Coord start, Coord end, float heuristic) {
+        return query(new PathQuery(start, end, heuristic));
+    }
+
+    public PathResult query(PathQuery q) {
+        return query(q, null, null);
+    }
+
+    // starts q on pool and returns at once; listener (which may be null) follows its progress
+    public PathTask submit(PathQuery q, Executor pool, PathProgressListener listener) {
+        if(q == null) throw new IllegalArgumentException("query is null");
+        PathTask task = new PathTask(this, q, listener);
+        pool.execute(task);
+        return task;
+    }
+
+    // searches in slices, reporting to listener and giving up if task is cancelled (either may be null)
+    PathResult query(PathQuery q, PathProgressListener listener, PathTask task) {
+        int N = terrain.getN();
+        if(!q.getStart().isInBounds(0, 0, N-1, N-1) || !q.getEnd().isInBounds(0, 0, N-1, N-1))
+            throw new IndexOutOfBoundsException("The location is out of bounds.");
+        GridAStar search = borrow();
+        PathResult result;
+        try {
+            SearchWorkspace ws = search.getWorkspace();
+            if(q.getHeuristic() == 0) ws.useRadixHeap();
+            else ws.useBinaryHeap();
+            search.begin(ws.cell(q.getStart().getI(), q.getStart().getJ()), ws.cell(q.getEnd().getI(), q.getEnd().getJ()), q.getHeuristic());
+            while(!search.step(SLICE)) {
+                if(task != null) {
+                    if(task.isCancelled()) throw new CancellationException("query cancelled: " + q);
+                    task.setSearchSize(search.getSearchSize());
+                }
+                if(listener != null) listener.progress(q, search.getSearchSize());
+            }
+            result = answer(q, search, ws);
+        } finally {
+            release(search);
+        }
+        if(task != null) task.setSearchSize(result.getSearchSize());
+        if(listener != null) listener.finished(result);
+        return result;
+    }
+
+    private PathResult answer(PathQuery q, GridAStar search, SearchWorkspace ws) {
+        if(!search.isFound()) return new PathResult(q, false, 0, search.getSearchSize(), PackedPath.EMPTY,
+                ws.getMinI(), ws.getMinJ(), ws.getMaxI(), ws.getMaxJ());
+
+        PackedPath path = PackedPath.adopt(terrain, search.extractPath());
+        return new PathResult(q, true, search.getPathCost(), search.getSearchSize(), path,
+                ws.getMinI(), ws.getMinJ(), ws.getMaxI(), ws.getMaxJ());
+    }
+
+    // answers every query on the given pool; results are in query order
+    public List<PathResult> queryAll(List<PathQuery> queries, ExecutorService pool) {
+        List<Future<PathResult>> futures = new ArrayList<>(queries.size());
+        for(PathQuery q : queries) futures.add(pool.submit(() -> query(q)));
+        List<PathResult> results = new ArrayList<>(queries.size());
+        try {
+            for(Future<PathResult> f : futures) results.add(f.get());
+        } catch(InterruptedException e) {
+            for(Future<PathResult> f : futures) f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for path queries", e);
+        } catch(ExecutionException e) {
+            for(Future<PathResult> f : futures) f.cancel(true);
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if(cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+        return results;
+    }
+
+    // answers every query on the engine's own threads, one per core
+    public List<PathResult> queryAll(List<PathQuery> queries) {
+        return queryAll(queries, executor());
+    }
+
+    private synchronized ExecutorService executor() {
+        if(closed) throw new IllegalStateException("the engine is closed");
+        if(executor == null) {
+            executor = Executors.newFixedThreadPool(cores, r -> {
+                Thread t = new Thread(r, "PathQueryEngine");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return executor;
+    }
+
+    // compares one thread against the batch API on random queries
+    // usage: java PathQueryEngine emap [queries]
+    public static void main(String[] args) {
+        if(args.length < 1) {
+            StdOut.println("usage: java PathQueryEngine emap [queries]");
+            return;
+        }
+        Terrain terrain = new Terrain(args[0]);
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int N = terrain.getN();
+        List<PathQuery> queries = new ArrayList<>();
+        for(int k = 0; k < count; k++) {
+            queries.add(new PathQuery(new Coord(StdRandom.uniform(N), StdRandom.uniform(N)),
+                                      new Coord(StdRandom.uniform(N), StdRandom.uniform(N)), 1));
+        }
+        PathQueryEngine engine = new PathQueryEngine(terrain);
+
+        Stopwatch sw = new Stopwatch();
+        for(PathQuery q : queries) engine.query(q);
+        double serial = sw.elapsedTime();
+        sw = new Stopwatch();
+        engine.queryAll(queries);
+        double batch = sw.elapsedTime();
+        sw = new Stopwatch();
+        engine.queryAll(queries);
+        double again = sw.elapsedTime();
+        engine.close();
+        StdOut.printf("%d queries on %d cores: serial %.2fs (%.1f/s), batch %.2fs (%.1f/s), again %.2fs (%.1f/s)%n",
+                count, Runtime.getRuntime().availableProcessors(), serial, count / serial, batch, count / batch, again, count / again);
+    }
+}
@@ -0,0 +1,55 @@
+import java.util.List;
+
+/**
+ * PathResult is the immutable answer to a PathQuery: whether a path was
+ * found, its cost, the cells on it from start to end, and how many cells the
+ * search generated.  It shares no state with the engine that produced it.
+ * It also remembers the bounding box of the generated cells, which is all of
+ * the terrain the answer depends on (see PathCache).
+ */
+public final class PathResult {
+    private final PathQuery query;
+    private final boolean found;
+    private final float cost;
+    private final int searchSize;
+    private final PackedPath path;
+    private final int minI, minJ, maxI, maxJ;   // bounding box of the generated cells
+
+    PathResult(PathQuery query, boolean found, float cost, int searchSize, PackedPath path,
+               int minI, int minJ, int maxI, int maxJ) {
+        this.query = query;
+        this.found = found;
+        this.cost = cost;
+        this.searchSize = searchSize;
+        this.path = path;
+        this.minI = minI;
+        this.minJ = minJ;
+        this.maxI = maxI;
+        this.maxJ = maxJ;
+    }
+
+    // true if (i,j) lies in the bounding box of the cells the search generated
+    boolean searchTouches(int i, int j) {
+        return i >= minI && i <= maxI && j >= minJ && j <= maxJ;
+    }
+
+    // true if the window i0..i1, j0..j1 overlaps the bounding box of the generated cells
+    boolean searchTouches(int i0, int j0, int i1, int j1) {
+        return i0 <= maxI && i1 >= minI && j0 <= maxJ && j1 >= minJ;
+    }
+
+    public PathQuery getQuery() { return query; }
+    public boolean foundPath() { return found; }
+    public float getPathCost() { return cost; }
+    public int getSearchSize() { return searchSize; }
+
+    // cells of the path from start to end; empty if none was found
+    public List<Coord> getPathSolution() { return path.asList(); }
+
+    // the same cells, packed, with the cost to reach each one
+    public PackedPath getPackedPath() { return path; }
+
+    public String toString() {
+        return query + (found ? " cost " + cost + ", " + path.size() + " cells" : " no path") + ", searched " + searchSize;
+    }
+}
@@ -0,0 +1,124 @@
+import java.util.Arrays;
+
+/**
+ * PathSimplifier shortens a path found on the grid to the waypoints a
+ * Walker or the visualizer actually needs.  From each waypoint it skips
+ * ahead as far as it can and keeps the last cell it reached:
+ *
+ * runs only     a cell is skipped while the path goes on straight over
+ *               flat cells (RunLengthPath's runs of cost-1 steps), so the
+ *               waypoints trace the same cells at the same cost (but for
+ *               float rounding, the sum having fewer terms)
+ * string pull   a cell is skipped while the straight line to it is clear:
+ *               walking the cells the line crosses costs no more than the
+ *               path did between the two, and neither does
+ *               computeTravelCost between the two waypoints
+ *
+ * A string-pulled result whose total (summed the way PackedPath sums it)
+ * still comes out higher than the original's is dropped in favor of the
+ * original.  Note that computeTravelCost between cells that are not
+ * neighbors only looks at their two heights, which is why the line itself
+ * is walked before cutting a corner.
+ */
+public final class PathSimplifier {
+    private static final int MAX_SKIP = 1024;     // cells looked ahead from a waypoint when string pulling
+
+    private PathSimplifier() { }
+
+    // the waypoints of path; stringPull also cuts corners along clear straight lines
+    public static PackedPath simplify(Terrain terrain, PackedPath path, boolean stringPull) {
+        int n = path.size();
+        if(n < 3) return path;
+        int[] waypoints = new int[n];
+        int count = 0;
+        waypoints[count++] = path.getCell(0);
+        int a = 0;
+        while(a < n - 1) {
+            int b = a + 1;
+            int limit = Math.min(n - 1, a + MAX_SKIP);
+            if(stringPull) {
+                while(b < limit && pulls(terrain, path, a, b + 1)) b++;
+            } else {
+                while(b < n - 1 && continuesFlatRun(terrain, path, a, b + 1)) b++;
+            }
+            waypoints[count++] = path.getCell(b);
+            a = b;
+        }
+        if(count == n) return path;
+        PackedPath simplified = PackedPath.adopt(terrain, Arrays.copyOf(waypoints, count));
+        if(stringPull && simplified.getTotalCost() > path.getTotalCost()) return path;
+        return simplified;
+    }
+
+    // true if the steps from a up to b all go the same way between cells of one height
+    private static boolean continuesFlatRun(Terrain terrain, PackedPath path, int a, int b) {
+        if(path.getI(b) - path.getI(b-1) != path.getI(a+1) - path.getI(a)) return false;
+        if(path.getJ(b) - path.getJ(b-1) != path.getJ(a+1) - path.getJ(a)) return false;
+        int h = terrain.getHeight(path.getI(a), path.getJ(a));
+        return terrain.getHeight(path.getI(a+1), path.getJ(a+1)) == h && terrain.getHeight(path.getI(b), path.getJ(b)) == h;
+    }
+
+    // true if waypoint a can go straight to cell b of path without raising the cost
+    private static boolean pulls(Terrain terrain, PackedPath path, int a, int b) {
+        double along = (double) path.getCost(b) - path.getCost(a);
+        if(cost(terrain, path, a, b) > along) return false;
+        return lineCost(terrain, path.getI(a), path.getJ(a), path.getI(b), path.getJ(b), along) <= along;
+    }
+
+    private static float cost(Terrain terrain, PackedPath path, int a, int b) {
+        return terrain.computeTravelCost(path.getI(a), path.getJ(a), path.getI(b), path.getJ(b));
+    }
+
+    // cost of walking the 4-connected line from (i0,j0) to (i1,j1), giving up once it passes limit
+    private static double lineCost(Terrain terrain, int i0, int j0, int i1, int j1, double limit) {
+        long di = Math.abs(i1 - i0), dj = Math.abs(j1 - j0);
+        int si = i1 > i0 ? 1 : -1, sj = j1 > j0 ? 1 : -1;
+        int i = i0, j = j0;
+        double cost = 0;
+        for(long ki = 0, kj = 0; ki < di || kj < dj; ) {
+            // step across whichever cell edge the line reaches first
+            int ni = i, nj = j;
+            if((1 + 2 * ki) * dj < (1 + 2 * kj) * di) {
+                ni += si;
+                ki++;
+            } else {
+                nj += sj;
+                kj++;
+            }
+            cost += terrain.computeTravelCost(i, j, ni, nj);
+            if(cost > limit) return cost;
+            i = ni;
+            j = nj;
+        }
+        return cost;
+    }
+
+    // compares paths, their run-length encodings and both kinds of waypoints on random queries
+    // usage: java PathSimplifier emap [queries]
+    public static void main(String[] args) {
+        if(args.length < 1) {
+            StdOut.println("usage: java PathSimplifier emap [queries]");
+            return;
+        }
+        Terrain terrain = new Terrain(args[0]);
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int N = terrain.getN();
+        PathQueryEngine engine = new PathQueryEngine(terrain);
+        for(int k = 0; k < count; k++) {
+            PathResult result = engine.query(new Coord(StdRandom.uniform(N), StdRandom.uniform(N)),
+                                             new Coord(StdRandom.uniform(N), StdRandom.uniform(N)), 1);
+            if(!result.foundPath()) continue;
+            PackedPath path = result.getPackedPath();
+            RunLengthPath runs = RunLengthPath.of(terrain, path);
+            PackedPath decoded = runs.toPackedPath(terrain);
+            boolean lossless = decoded.size() == path.size() && decoded.getTotalCost() == path.getTotalCost();
+            for(int c = 0; lossless && c < path.size(); c++) lossless = decoded.getCell(c) == path.getCell(c);
+            PackedPath ends = simplify(terrain, path, false);
+            PackedPath pulled = simplify(terrain, path, true);
+            StdOut.printf("%6d cells, cost %.1f: %5d runs (%s), %5d waypoints (cost %.1f), %5d pulled (cost %.1f)%n",
+                    path.size(), path.getTotalCost(), runs.getRunCount(), lossless ? "lossless" : "LOSSY",
+                    ends.size(), ends.getTotalCost(), pulled.size(), pulled.getTotalCost());
+        }
+        engine.close();
+    }
+}
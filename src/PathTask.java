@@ -0,0 +1,46 @@
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * PathTask is a query running in the background, as returned by
+ * PathQueryEngine.submit.  The search checks for cancellation between
+ * slices of expansions, so cancel stops it within one slice whether or not
+ * it interrupts the thread; a cancelled task frees its thread for the next
+ * query instead of finishing a stale one.
+ */
+public final class PathTask implements RunnableFuture<PathResult> {
+    private final PathQuery query;
+    private final FutureTask<PathResult> future;
+    private volatile int searchSize;
+
+    PathTask(PathQueryEngine engine, PathQuery query, PathProgressListener listener) {
+        this.query = query;
+        this.future = new FutureTask<>(() -> engine.query(query, listener, this));
+    }
+
+    public PathQuery getQuery() { return query; }
+
+    // cells the search has generated so far
+    public int getSearchSize() { return searchSize; }
+
+    void setSearchSize(int n) { searchSize = n; }
+
+    public void run() { future.run(); }
+
+    public boolean cancel(boolean mayInterruptIfRunning) { return future.cancel(mayInterruptIfRunning); }
+    public boolean isCancelled() { return future.isCancelled(); }
+    public boolean isDone() { return future.isDone(); }
+
+    public PathResult get() throws InterruptedException, ExecutionException { return future.get(); }
+
+    public PathResult get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        return future.get(timeout, unit);
+    }
+
+    public String toString() {
+        return "PathTask " + query + (isCancelled() ? " cancelled" : isDone() ? " done" : " searched " + searchSize);
+    }
+}
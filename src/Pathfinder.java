@@ -1,5 +1,8 @@
 import java.lang.IndexOutOfBoundsException;
 import java.lang.IllegalArgumentException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Pathfinder uses A* search to find a near optimal path
@@ -7,82 +10,67 @@ import java.lang.IllegalArgumentException;
  */
 
 public class Pathfinder {
+    /**
+     * Which open list computePath uses.  AUTO picks the radix heap when the
+     * heuristic is 0 (plain Dijkstra, so extracted keys are monotone) and the
+     * binary heap otherwise.  BUCKET_QUEUE must be chosen explicitly since it
+     * is only exact for costs that are multiples of the bucket width.
+     */
+    public enum OpenListType { AUTO, BINARY_HEAP, RADIX_HEAP, BUCKET_QUEUE }
+
+    /**
+     * Which search computePath runs.  ASTAR searches from the start only;
+     * BIDIRECTIONAL searches from both ends and meets in the middle (it
+     * always uses binary heaps).  JUMP_POINT is A* that jumps across runs of
+     * equal height instead of expanding every cell in them (it always uses a
+     * binary heap).  HIERARCHICAL searches a precomputed graph of cluster
+     * entrances (HPA*) and is near optimal rather than optimal.  INCREMENTAL
+     * keeps its search tree across computePath calls (resetPath does not clear
+     * it) and after terrain edits only repairs the part the edits affected.
+     * FLOW_FIELD computes a FlowField to the end once; later queries to the
+     * same end, from any start, just follow it.  ANYTIME (ARA*) starts with
+     * the heuristic value as an inflation weight (AnytimeAStar.DEFAULT_WEIGHT
+     * if it is at most 1) and improves its path until it is optimal or the
+     * time budget runs out.
+     */
+    public enum SearchMode { ASTAR, BIDIRECTIONAL, JUMP_POINT, HIERARCHICAL, INCREMENTAL, FLOW_FIELD, ANYTIME }
+
+    private static final int BUCKETS = 4096;
+    private static final int CLUSTER_SIZE = 16;
+    private static final int SLICE = 256;      // expansions between clock checks in stepPathFor
+
     private Coord end;
     private Coord start;
     private Terrain terrain;
     private float heur;
     private boolean pathFound = false;  //implement in compute path, set to true when found
     private int searchSize;
-    private PFNode[][] board;
-    private PFNode endNode;
-    private Stack<Coord> stack = new Stack<>();
-    //set up Minimum Priority Queue
-    private MinPQ<PFNode> pq = new MinPQ<>();
+    private SearchMode mode = SearchMode.ASTAR;
+    private SearchWorkspace workspace;
+    private SearchWorkspace reverseWorkspace;
+    private GridAStar astar;
+    private BidirectionalAStar bidirectional;
+    private JumpPointSearch jumpPoint;
+    private HierarchicalAStar hierarchical;
+    private int clusterSize = CLUSTER_SIZE;
+    private IncrementalAStar incremental;
+    private LandmarkHeuristic landmarks;
+    private FlowField flowField;
+    private AnytimeAStar anytime;
+    private long timeBudget = 0;    // nanoseconds, 0 for none
+    private PathCache cache;
+    private final CopyOnWriteArrayList<SearchListener> listeners = new CopyOnWriteArrayList<>();
+    private CountingOpenList counting;
+    private boolean counted;        // the current query's open list goes through counting
+    private GridSearch search;      // the search that produced the current results
+    private boolean computing = false;  // a query started by beginPath is still being stepped
+    private long stepNanos;         // time spent stepping the current query
+    private long stepBytes;         // allocated while stepping it, -1 if not measured
+    private int revision;           // bumped whenever the results or the searched cells may change
+    private PackedPath path = PackedPath.EMPTY;
     private float pathCost;
-
-    /**
-     * PFNode will be the key for MinPQ (used in computePath())
-     */
-    private class PFNode implements Comparable<PFNode> {
-        private boolean isUsed;
-        private boolean invalid;
-        private Coord loc;
-        private PFNode fromNode;
-        private float cost;
-        // loc: the location of the PFNode
-        // fromNode: how did we get here? (linked list back to start)
-
-        public PFNode(Coord loc, PFNode fromNode) {
-            this.loc = loc;
-            this.fromNode = fromNode;
-            if(fromNode != null)
-                cost = fromNode.cost + terrain.computeTravelCost(loc, fromNode.loc);
-        }
-
-        // compares this with that, used to find minimum cost PFNode
-        public int compareTo(PFNode that) {
-            if(this.getCost(heur) < that.getCost(heur)) return -1;  //this < that
-            if(that.getCost(heur) < this.getCost(heur)) return 1;   //that < this
-            return 0;  //this == that
-        }
-
-        // returns the cost to travel from starting point to this
-        // via the fromNode chain
-        public float getCost(float heuristic) {  //call getCost with heuristic of 0, get travel cost, do A* search
-            //return fromNode.getCost(0) + terrain.computeTravelCost(fromNode.loc, loc) + heuristic*terrain.computeDistance(loc.getI(), loc.getJ(), endNode.loc.getI(), endNode.loc.getJ());
-            //StdOut.println(heuristic);
-            //StdOut.println(terrain.computeDistance(loc.getI(), loc.getJ(), end.getI(), end.getJ()));
-            //StdOut.println("Cost:" + cost);
-            return cost + heuristic*terrain.computeDistance(loc.getI(), loc.getJ(), end.getI(), end.getJ());
-        }
-
-        // returns if this PFNode is not marked invalid
-        public boolean isValid() {
-            return invalid;
-        }
-
-        // marks the PFNode as invalid
-        public void invalidate() {
-            invalid = true;
-        }
-
-        // returns if the PFNode is marked as used
-        public boolean isUsed() {  //help
-            return isUsed;
-        }
-
-        // marks the PFNode as used
-        public void use(PFNode node) {
-            node.isUsed = true;
-        }
-
-        // returns an Iterable of PFNodes that surround this
-        public Iterable<PFNode> neighbors() {
-            Stack<PFNode> s = new Stack<>();
-            s.push(new PFNode(null, null));
-            return s;
-        }
-    }
+    private OpenListType openListType = OpenListType.AUTO;
+    private float bucketWidth = 1.0f;
 
     public Pathfinder(Terrain terrain) {
         this.terrain = terrain;
@@ -114,106 +102,354 @@ public class Pathfinder {
 
     public float getHeuristic() { return heur; }
 
+    public void setOpenListType(OpenListType type) {
+        if(type == null) throw new IllegalArgumentException("The open list type is null.");
+        openListType = type;
+    }
+
+    public OpenListType getOpenListType() { return openListType; }
+
+    public void setBucketWidth(float width) {
+        if(!(width > 0)) throw new IllegalArgumentException("The bucket width must be positive.");
+        bucketWidth = width;
+    }
+
+    public float getBucketWidth() { return bucketWidth; }
+
+    public void setSearchMode(SearchMode mode) {
+        if(mode == null) throw new IllegalArgumentException("The search mode is null.");
+        this.mode = mode;
+    }
+
+    public SearchMode getSearchMode() { return mode; }
+
+    // cluster size of the HIERARCHICAL mode; changing it rebuilds the abstract graph
+    public void setClusterSize(int size) {
+        if(size < 2) throw new IllegalArgumentException("The cluster size must be at least 2.");
+        if(size == clusterSize) return;
+        clusterSize = size;
+        if(hierarchical != null) {
+            hierarchical.dispose();
+            hierarchical = null;
+        }
+    }
+
+    public int getClusterSize() { return clusterSize; }
+
+    // landmark (ALT) tables that sharpen the heuristic of the ASTAR mode, or null
+    public void setLandmarks(LandmarkHeuristic landmarks) {
+        if(landmarks != null && landmarks.getTerrain() != terrain) throw new IllegalArgumentException("The landmarks belong to another terrain.");
+        this.landmarks = landmarks;
+    }
+
+    public LandmarkHeuristic getLandmarks() { return landmarks; }
+
+    // how long an ANYTIME query may take, in milliseconds; 0 lets it run until the path is optimal
+    public void setTimeBudget(double millis) {
+        if(!(millis >= 0)) throw new IllegalArgumentException("The time budget must not be negative.");
+        timeBudget = (long) (millis * 1e6);
+    }
+
+    public double getTimeBudget() { return timeBudget / 1e6; }
+
+    // the path found costs at most this times the optimal cost; only known for the ANYTIME mode (NaN otherwise)
+    public float getSuboptimalityBound() {
+        if(search == null || search != anytime || !pathFound) return Float.NaN;
+        return anytime.getSuboptimalityBound();
+    }
+
+    // cache that answers the ASTAR mode's queries with its own engine, or null
+    public void setPathCache(PathCache cache) {
+        if(cache != null && cache.getTerrain() != terrain) throw new IllegalArgumentException("The cache belongs to another terrain.");
+        this.cache = cache;
+    }
+
+    public PathCache getPathCache() { return cache; }
+
+    // listeners get SearchMetrics for every query; with none, nothing is measured
+    public void addSearchListener(SearchListener l) {
+        if(l == null) throw new IllegalArgumentException("The listener is null.");
+        listeners.add(l);
+    }
+    public void removeSearchListener(SearchListener l) {
+        listeners.remove(l);
+    }
+
+    // removes the engines this Pathfinder created and that listen for edits (the HIERARCHICAL
+    // mode's abstract graph, the INCREMENTAL mode's search tree and the FLOW_FIELD mode's field)
+    // from the Terrain, so an unused Pathfinder can be collected; call it once done with the
+    // Pathfinder.  Landmarks and a path cache belong to the caller.  The engines are created
+    // again if the Pathfinder is used afterwards.
+    public void dispose() {
+        resetPath();
+        search = null;
+        if(hierarchical != null) {
+            hierarchical.dispose();
+            hierarchical = null;
+        }
+        if(incremental != null) {
+            incremental.dispose();
+            incremental = null;
+        }
+        if(flowField != null) {
+            flowField.dispose();
+            flowField = null;
+        }
+    }
+
+    // clears the results, abandoning a query that is still being stepped
     public void resetPath() {
-        start = getPathStart(); //how do I tell it to find where the mouse is at? setPathStart?
-        end = getPathEnd();
-        endNode = null;
+        revision++;
+        computing = false;
+        stopCounting();
+        counted = false;
         pathFound = false;
         searchSize = 0;
+        pathCost = 0;
 
-        pq = new MinPQ<>();
+        path = PackedPath.EMPTY;
+    }
 
-        stack = new Stack<>();
+    public void computePath() {
+        if(getPathEnd() == null || getPathStart() == null) throw new IllegalArgumentException("Either or both of start path or end path have NOT been set.");
+        computing = false;
+        revision++;
 
-        //computePath();
+        if(!listeners.isEmpty()) {
+            computeMeasuredPath();
+            return;
+        }
+        if(cache != null && mode == SearchMode.ASTAR) {
+            computeCachedPath();
+            return;
+        }
+        search = prepareSearch();
+        runSearch();
+        if(pathFound) path = PackedPath.adopt(terrain, search.extractPath());
     }
 
-    public void computePath() {
+    /**
+     * Starts a query that stepPath or stepPathFor then advance a slice at a
+     * time, so the caller can redraw or handle input in between; resetPath or
+     * another beginPath abandons it.  The results (foundPath, getPathCost,
+     * getPathSolution) are set once a step finishes the search; until then
+     * wasSearched and getSearchSize show its progress.  Queries answered by
+     * the path cache finish here.
+     */
+    public void beginPath() {
         if(getPathEnd() == null || getPathStart() == null) throw new IllegalArgumentException("Either or both of start path or end path have NOT been set.");
 
-        //set up logic board with 2D array
-        int N = terrain.getN();
-        board = new PFNode[N][N];
+        resetPath();
+        boolean measured = !listeners.isEmpty();
+        long bytes = measured ? allocatedBytes() : -1;
+        if(cache != null && mode == SearchMode.ASTAR) {
+            long t0 = System.nanoTime();
+            computeCachedPath();
+            stepNanos = System.nanoTime() - t0;
+            stepBytes = bytes >= 0 ? allocatedBytes() - bytes : -1;
+            reportSteppedPath(0);
+            return;
+        }
+        long t0 = System.nanoTime();
+        search = prepareSearch();
+        if(measured) startCounting();
+        beginSearch();
+        stepNanos = System.nanoTime() - t0;
+        stepBytes = bytes >= 0 ? allocatedBytes() - bytes : -1;
+        computing = true;
+        revision++;
+    }
 
-        //I added this... is it needed?
-        //setHeuristic(3);
+    // expands at most maxExpansions cells of the query started by beginPath; returns true once it is finished
+    public boolean stepPath(int maxExpansions) {
+        if(!computing) return true;
+        revision++;
+        long bytes = stepBytes >= 0 ? allocatedBytes() : -1;
+        long t0 = System.nanoTime();
+        boolean done = search.step(maxExpansions);
+        long t1 = System.nanoTime();
+        stepNanos += t1 - t0;
+        // a budgeted ANYTIME query settles for its best path once it has stepped for the budget
+        if(!done && search == anytime && timeBudget > 0 && anytime.isFound() && stepNanos >= timeBudget) done = true;
+        searchSize = search.getSearchSize();
+        if(!done) {
+            if(bytes >= 0) stepBytes += allocatedBytes() - bytes;
+            return false;
+        }
 
-        PFNode beginNode = new PFNode(getPathStart(), null);
-        board[getPathStart().getI()][getPathStart().getJ()] = beginNode;
-        pq.insert(beginNode);
-        beginNode.use(beginNode);
-        beginNode.cost = 0;
-        searchSize = 0;
-        while(!pathFound){
-            //StdOut.println("path not found");
-            //remove from pq
-            PFNode removed = pq.delMin();
-            //StdOut.println("The minimum has been removed.");  //bug check
-            //check if node is at end
-            if(removed.loc.equals(getPathEnd())){  //correct?
-                pq.insert(removed);
-                endNode = removed;
-                pathFound = true;
-                endNode.use(endNode);
-                endNode.cost = removed.cost + terrain.computeTravelCost(removed.loc, endNode.loc);
-                pathCost = endNode.cost;
-                searchSize ++;
-                break;
-            }
-            //"process" node just removed
-            //see if the locations around the removed position are in bounds
-            //now have them point to removed, "from = removed";  ?
-            if(removed.loc.getJ() -1 >= 0 ){
-               if(board[removed.loc.getI()][removed.loc.getJ()-1] == null){
-                    PFNode node = new PFNode(removed.loc.add(0, -1), removed); //good
-                    board[removed.loc.getI()][removed.loc.getJ() - 1] = node;
-                    pq.insert(node);
-                    node.use(node);
-                    searchSize ++;
-                    //node.cost = removed.cost + terrain.computeTravelCost(removed.loc, node.loc);
-                }
-            }
-            if(removed.loc.getI() - 1 >= 0){
-                if(board[removed.loc.getI()-1][removed.loc.getJ()] == null) {
-                    PFNode node = new PFNode(removed.loc.add(-1, 0), removed); //good
-                    board[removed.loc.getI() - 1][removed.loc.getJ()] = node;
-                    pq.insert(node);
-                    node.use(node);
-                    searchSize ++;
-                    //node.cost = removed.cost + terrain.computeTravelCost(removed.loc, node.loc);
-                }
-            }
-            if(removed.loc.getJ() + 1 < N-1){
-                if(board[removed.loc.getI()][removed.loc.getJ()+1] == null) {
-                    PFNode node = new PFNode(removed.loc.add(0, 1), removed); //good
-                    board[removed.loc.getI()][removed.loc.getJ() + 1] = node;
-                    pq.insert(node);
-                    node.use(node);
-                    searchSize ++;
-                    //node.cost = removed.cost + terrain.computeTravelCost(removed.loc, node.loc);
-                }
-            }
-            if(removed.loc.getI() + 1 < N-1){
-                if(board[removed.loc.getI()+1][removed.loc.getJ()] == null) {
-                    PFNode node = new PFNode(removed.loc.add(1, 0), removed); //good
-                    board[removed.loc.getI() + 1][removed.loc.getJ()] = node;
-                    pq.insert(node);
-                    node.use(node);
-                    searchSize ++;
-                    //node.cost = removed.cost + terrain.computeTravelCost(removed.loc, node.loc);
-                }
-            }
+        computing = false;
+        stopCounting();
+        collectResults();
+        if(pathFound) path = PackedPath.adopt(terrain, search.extractPath());
+        long t2 = System.nanoTime();
+        if(bytes >= 0) stepBytes += allocatedBytes() - bytes;
+        reportSteppedPath(t2 - t1);
+        return true;
+    }
+
+    // steps the query started by beginPath for about the given number of microseconds; returns true once it is finished
+    public boolean stepPathFor(long micros) {
+        long until = System.nanoTime() + micros * 1000;
+        while(!stepPath(SLICE)) {
+            if(System.nanoTime() - until >= 0) return false;
+        }
+        return true;
+    }
+
+    // true while a query started by beginPath has not finished
+    public boolean isComputing() { return computing; }
+
+    // changes whenever the path, the results or the searched cells may have changed, so drawings of them can be reused until then
+    public int getRevision() { return revision; }
+
+    // stepped queries are timed and their allocations summed across all their steps
+    private void reportSteppedPath(long pathNanos) {
+        if(listeners.isEmpty()) return;
+        SearchMetrics metrics = metrics(search == null, stepNanos, pathNanos, stepBytes);
+        for(SearchListener l : listeners) l.searchFinished(metrics);
+    }
+
+    // the ASTAR mode's open list goes through counting for the rest of the query
+    private void startCounting() {
+        counted = search == astar;
+        if(!counted) return;
+        if(counting == null) counting = new CountingOpenList(terrain.getN() * terrain.getN());
+        counting.wrap(workspace.open());
+        workspace.useOpenList(counting);
+    }
+
+    // puts the counted open list back; the counts stay readable until the next query
+    private void stopCounting() {
+        if(counted && workspace.open() == counting) workspace.useOpenList(counting.getInner());
+    }
+
+    // metrics of the finished query, with the open list counts from counting or from the search itself
+    private SearchMetrics metrics(boolean cached, long searchNanos, long pathNanos, long bytes) {
+        long pushes = -1, pops = -1, peak = -1, reExpansions = -1, heuristicEvaluations = -1;
+        if(counted) {
+            pushes = counting.getPushes();
+            pops = counting.getPops();
+            peak = counting.getPeakSize();
+            reExpansions = counting.getReExpansions();
+            heuristicEvaluations = heur == 0 ? 0 : pushes;
+        } else if(!cached) {
+            pushes = search.getPushes();
+            pops = search.getPops();
+            peak = search.getPeakOpenSize();
+            reExpansions = search.getReExpansions();
+            heuristicEvaluations = search.getHeuristicEvaluations();
         }
+        return new SearchMetrics(mode, cached, start, end, heur, pathFound, pathCost, searchSize,
+                pushes, pops, peak, reExpansions, heuristicEvaluations, searchNanos, pathNanos, bytes);
+    }
+
+    private void beginSearch() {
+        search.begin(workspace.cell(start.getI(), start.getJ()), workspace.cell(end.getI(), end.getJ()), heur);
+    }
+
+    private void runSearch() {
+        long deadline = System.nanoTime() + timeBudget;
+        beginSearch();
+        if(search == anytime && timeBudget > 0) anytime.run(deadline);
+        else search.step(Integer.MAX_VALUE);
+        collectResults();
+    }
+
+    private void collectResults() {
+        searchSize = search.getSearchSize();
+        if(!search.isFound()) return;
+
+        pathFound = true;
+        pathCost = search.getPathCost();
         StdOut.println("A connection has been found!");
+    }
 
-        stack.push(endNode.loc);
-        PFNode nextNode = endNode.fromNode;
-        while(nextNode.fromNode != beginNode){
-            stack.push(nextNode.loc);
-            nextNode = nextNode.fromNode;
+    // computePath with every phase timed and, for ASTAR, the open list counted
+    private void computeMeasuredPath() {
+        boolean cached = cache != null && mode == SearchMode.ASTAR;
+        long bytes = allocatedBytes();
+        long t0 = System.nanoTime(), t1, t2;
+        if(cached) {
+            computeCachedPath();
+            t1 = t2 = System.nanoTime();
+        } else {
+            search = prepareSearch();
+            startCounting();
+            runSearch();
+            t1 = System.nanoTime();
+            if(pathFound) path = PackedPath.adopt(terrain, search.extractPath());
+            t2 = System.nanoTime();
+            stopCounting();
         }
-        //this should be the start node
-        stack.push(nextNode.fromNode.loc);
+        if(bytes >= 0) bytes = allocatedBytes() - bytes;
+        SearchMetrics metrics = metrics(cached, t1 - t0, t2 - t1, bytes);
+        for(SearchListener l : listeners) l.searchFinished(metrics);
+    }
+
+    // bytes allocated so far by this thread, or -1 if the JVM does not say
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(!(bean instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if(!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) return -1;
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private void computeCachedPath() {
+        search = null;
+        PathResult result = cache.query(start, end, heur);
+        searchSize = result.getSearchSize();
+        if(!result.foundPath()) return;
+
+        pathFound = true;
+        pathCost = result.getPathCost();
+        StdOut.println("A connection has been found!");
+
+        path = result.getPackedPath();
+    }
+
+    // workspaces are allocated on first use and reused by every later query
+    private GridSearch prepareSearch() {
+        int N = terrain.getN();
+        if(workspace == null) workspace = new SearchWorkspace(N);
+
+        if(mode == SearchMode.BIDIRECTIONAL) {
+            if(reverseWorkspace == null) reverseWorkspace = new SearchWorkspace(N);
+            if(bidirectional == null) bidirectional = new BidirectionalAStar(terrain, workspace, reverseWorkspace);
+            return bidirectional;
+        }
+
+        if(mode == SearchMode.ANYTIME) {
+            if(anytime == null) anytime = new AnytimeAStar(terrain);
+            return anytime;
+        }
+        if(mode == SearchMode.FLOW_FIELD) {
+            if(flowField == null) flowField = new FlowField(terrain);
+            return flowField;
+        }
+        if(mode == SearchMode.INCREMENTAL) {
+            if(incremental == null) incremental = new IncrementalAStar(terrain);
+            return incremental;
+        }
+        if(mode == SearchMode.HIERARCHICAL) {
+            if(hierarchical == null) hierarchical = new HierarchicalAStar(terrain, workspace, clusterSize);
+            return hierarchical;
+        }
+        if(mode == SearchMode.JUMP_POINT) {
+            if(jumpPoint == null) jumpPoint = new JumpPointSearch(terrain, workspace);
+            return jumpPoint;
+        }
+
+        OpenListType type = openListType;
+        if(type == OpenListType.AUTO) type = (heur == 0) ? OpenListType.RADIX_HEAP : OpenListType.BINARY_HEAP;
+        switch(type) {
+            case RADIX_HEAP:   workspace.useRadixHeap(); break;
+            case BUCKET_QUEUE: workspace.useBucketQueue(bucketWidth, BUCKETS); break;
+            default:           workspace.useBinaryHeap(); break;
+        }
+        if(astar == null) astar = new GridAStar(terrain, workspace);
+        astar.setLandmarks(landmarks);
+        return astar;
     }
 
     public boolean foundPath() { //good
@@ -228,12 +464,28 @@ public class Pathfinder {
         return searchSize;
     }
 
-    public Iterable<Coord> getPathSolution() {
-        return stack;
+    // the path found, start first; empty if none was
+    public PackedPath getPathSolution() {
+        return path;
     } //good
 
     public boolean wasSearched(Coord loc) { //good
-        return board[loc.getI()][loc.getJ()] != null;
+        return wasSearched(loc.getI(), loc.getJ());
+    }
+
+    public boolean wasSearched(int i, int j) {
+        if(search == null) return false;
+        return search.wasSearched(workspace.cell(i, j));
+    }
+
+    // true if the last search was bidirectional and its backward half reached loc
+    public boolean wasSearchedFromEnd(Coord loc) {
+        return wasSearchedFromEnd(loc.getI(), loc.getJ());
+    }
+
+    public boolean wasSearchedFromEnd(int i, int j) {
+        if(search == null || search != bidirectional) return false;
+        return bidirectional.wasSearchedBackward(workspace.cell(i, j));
     }
 
 }
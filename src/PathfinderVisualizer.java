@@ -1,9 +1,22 @@
 /**
- * PathfinderVisualizer visualizes the terrain and found path.
+ * PathfinderVisualizer visualizes the terrain and found path.  The map is
+ * composited from cached layers: the terrain (a TerrainRaster, repainted
+ * only where it was edited), the searched cells and the path, the last two
+ * redrawn only when the Pathfinder's revision changes.  A frame in which
+ * only the walker moved just blits them.
  */
 
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.lang.reflect.Field;
 
 public class PathfinderVisualizer {
 
@@ -28,6 +41,27 @@ public class PathfinderVisualizer {
     private final static Color cEnd      = new Color(255, 128, 128);
     private final static Color cSolution = new Color(255, 128, 255);
     private final static Color cSearched = new Color(128,   0, 128);
+    private final static Color cSearchedFromEnd = new Color(  0, 128, 128);
+
+    // side of the map in pixels, and its lower left corner on the 512x512 canvas
+    private final static int MAP = 464, MAP_X = 24, MAP_Y = 36;
+
+    // rgb of every height, filled in once from height2Color
+    private final static int[] heightColors = new int[256];
+    static {
+        for(int h = 0; h < 256; h++) heightColors[h] = height2Color(h).getRGB();
+    }
+
+    // the searched cells are blended in half and half, as colorLERP(0.5) did
+    private final static int searchedArgb = (128 << 24) | (cSearched.getRGB() & 0xffffff);
+    private final static int searchedFromEndArgb = (128 << 24) | (cSearchedFromEnd.getRGB() & 0xffffff);
+
+    // cached layers; the searched and path layers show revision layersRevision of layersOf
+    private static TerrainRaster raster;
+    private static BufferedImage searchedLayer, pathLayer;
+    private static Pathfinder layersOf;
+    private static int layersRevision;
+    private static Field offscreenField;
 
     // linearly interpolating between the corresponding rgb values
     private static Color colorLERP(float v1, int r0, int g0, int b0, int r1, int g1, int b1) {
@@ -78,42 +112,134 @@ public class PathfinderVisualizer {
         drawCircle(loc.getI(), loc.getJ(), N, rad);
     }
 
-    private static void drawPath(Iterable<Coord> path, int N) {
-        boolean first = true;
+    private static void drawPath(PackedPath path, int N) {
         int c0 = 0, r0 = 0;
-        for (Coord loc : path) {
-            int c1 = (int)((loc.getI()+0.5f) * 464.0f / N);
-            int r1 = (int)((loc.getJ()+0.5f) * 464.0f / N);
-            if(!first) {
+        for (int k = 0; k < path.size(); k++) {
+            int c1 = (int)((path.getI(k)+0.5f) * 464.0f / N);
+            int r1 = (int)((path.getJ(k)+0.5f) * 464.0f / N);
+            if(k > 0) {
                 StdDraw.line(c0 + 24, 464 - r0 + 36, c1 + 24, 464 - r1 + 36);
             }
-            first = false;
             c0 = c1; r0 = r1;
         }
     }
 
-    // draw N-by-N pathfinding map
-    public static void draw(Terrain terrain, Pathfinder pf, Walker walker, int N) {
-        StdDraw.clear();
-        StdDraw.setXscale(0, 512);
-        StdDraw.setYscale(0, 512);
-        StdDraw.setPenColor(StdDraw.BLACK);
-        StdDraw.filledSquare(256, 256 + 12, 464 / 2);
+    // StdDraw only draws images read from files, so the cached layers are drawn on its offscreen buffer directly; null if that is not possible
+    private static Graphics2D offscreen() {
+        try {
+            if(offscreenField == null) {
+                Field f = StdDraw.class.getDeclaredField("offscreen");
+                f.setAccessible(true);
+                offscreenField = f;
+            }
+            Object g = offscreenField.get(null);
+            return g instanceof Graphics2D ? (Graphics2D) g : null;
+        } catch(ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // brings the cached layers up to date with the terrain and pf
+    private static void updateLayers(Terrain terrain, Pathfinder pf, int N, Rectangle canvas) {
+        if(raster == null || raster.getTerrain() != terrain || terrain.getN() != N) {
+            if(raster != null) raster.dispose();
+            raster = new TerrainRaster(terrain, MAP, heightColors);
+            layersOf = null;
+        }
+        if(pathLayer == null || pathLayer.getWidth() != canvas.width || pathLayer.getHeight() != canvas.height) {
+            pathLayer = new BufferedImage(canvas.width, canvas.height, BufferedImage.TYPE_INT_ARGB);
+            layersOf = null;
+        }
+        if(layersOf == pf && layersRevision == pf.getRevision()) return;
+        layersOf = pf;
+        layersRevision = pf.getRevision();
 
-        // draw terrain
+        if(searchedLayer == null) searchedLayer = new BufferedImage(MAP, MAP, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) searchedLayer.getRaster().getDataBuffer()).getData();
+        for(int row = 0; row < MAP; row++) {
+            int j = raster.cellAt(row);
+            int last = -1, argb = 0;
+            for(int col = 0; col < MAP; col++) {
+                int i = raster.cellAt(col);
+                if(i != last) {
+                    argb = pf.wasSearchedFromEnd(i, j) ? searchedFromEndArgb : pf.wasSearched(i, j) ? searchedArgb : 0;
+                    last = i;
+                }
+                pixels[row * MAP + col] = argb;
+            }
+        }
+
+        Graphics2D g = pathLayer.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, canvas.width, canvas.height);
+        g.setComposite(AlphaComposite.SrcOver);
+        if(pf.foundPath()) {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.scale(canvas.width / 512.0, canvas.height / 512.0);
+            Path2D.Float line = pathLine(PathSimplifier.simplify(terrain, pf.getPathSolution(), false), N);
+            // pen radii as StdDraw scales them
+            g.setColor(Color.BLACK);
+            g.setStroke(new BasicStroke((float) (0.006 * 512), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+            g.draw(line);
+            g.setColor(cSolution);
+            g.setStroke(new BasicStroke((float) (0.002 * 512), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+            g.draw(line);
+        }
+        g.dispose();
+    }
+
+    // the path through the same points drawPath connects, in 512x512 canvas pixels (y down);
+    // both are given the waypoints of straight flat runs only, which draw the same lines
+    private static Path2D.Float pathLine(PackedPath path, int N) {
+        Path2D.Float line = new Path2D.Float();
+        for(int k = 0; k < path.size(); k++) {
+            int c = (int)((path.getI(k)+0.5f) * 464.0f / N);
+            int r = (int)((path.getJ(k)+0.5f) * 464.0f / N);
+            float x = c + MAP_X, y = 512 - (464 - r + MAP_Y);
+            if(k == 0) line.moveTo(x, y);
+            else line.lineTo(x, y);
+        }
+        return line;
+    }
+
+    // the terrain and searched cells a pixel at a time, when the layers can't be drawn
+    private static void drawPixels(Terrain terrain, Pathfinder pf, int N) {
         for(int row = 0; row < 464; row++) {
             int j = (int)((float)row/464.0f * N);
             for(int col = 0; col < 464; col++) {
                 int i = (int)((float)col/464.0f * N);
-                Coord loc = new Coord(i,j);
-                Color c = height2Color(terrain.getHeight(loc));
-                if(pf.wasSearched(loc)) {
+                Color c = height2Color(terrain.getHeight(i, j));
+                if(pf.wasSearchedFromEnd(i, j)) {
+                    c = colorLERP(0.50f, c, cSearchedFromEnd);
+                } else if(pf.wasSearched(i, j)) {
                     c = colorLERP(0.50f, c, cSearched);
                 }
                 StdDraw.setPenColor(c);
                 StdDraw.filledSquare(col + 24, 464 - row + 36, 1);
             }
         }
+    }
+
+    // draw N-by-N pathfinding map
+    public static void draw(Terrain terrain, Pathfinder pf, Walker walker, int N) {
+        StdDraw.clear();
+        StdDraw.setXscale(0, 512);
+        StdDraw.setYscale(0, 512);
+        StdDraw.setPenColor(StdDraw.BLACK);
+        StdDraw.filledSquare(256, 256 + 12, 464 / 2);
+
+        // draw terrain and the searched cells
+        Graphics2D g = offscreen();
+        if(g != null) {
+            Rectangle canvas = g.getDeviceConfiguration().getBounds();
+            updateLayers(terrain, pf, N, canvas);
+            int x = canvas.width * MAP_X / 512, y = canvas.height * (512 - MAP_Y - MAP) / 512;
+            int w = canvas.width * MAP / 512, h = canvas.height * MAP / 512;
+            g.drawImage(raster.getImage(), x, y, w, h, null);
+            g.drawImage(searchedLayer, x, y, w, h, null);
+        } else {
+            drawPixels(terrain, pf, N);
+        }
 
         // draw path start
         if(pf.getPathStart() != null) {
@@ -138,33 +264,38 @@ public class PathfinderVisualizer {
         }
 
         // draw found path
-        if(pf.foundPath()) {
+        if(g != null) {
+            g.drawImage(pathLayer, 0, 0, null);
+        } else if(pf.foundPath()) {
+            PackedPath waypoints = PathSimplifier.simplify(terrain, pf.getPathSolution(), false);
             StdDraw.setPenColor(StdDraw.BLACK);
             StdDraw.setPenRadius(0.006);
-            drawPath(pf.getPathSolution(), N);
+            drawPath(waypoints, N);
 
             StdDraw.setPenColor(cSolution);
             StdDraw.setPenRadius(0.002);
-            drawPath(pf.getPathSolution(), N);
+            drawPath(waypoints, N);
         }
 
         // draw walker
         if(walker != null) {
-            Coord loc = walker.getLocation();
             StdDraw.setPenColor(StdDraw.BLACK);
             StdDraw.setPenRadius(0.006);
-            PathfinderVisualizer.drawCircle(loc, N, 2.0);
+            PathfinderVisualizer.drawCircle(walker.getI(), walker.getJ(), N, 2.0);
 
             StdDraw.setPenColor(StdDraw.WHITE);
             StdDraw.setPenRadius(0.002);
-            PathfinderVisualizer.drawCircle(loc, N, 2.0);
+            PathfinderVisualizer.drawCircle(walker.getI(), walker.getJ(), N, 2.0);
         }
 
         // write status text
         StdDraw.setFont(new Font("SansSerif", Font.PLAIN, 12));
         StdDraw.setPenColor(StdDraw.BLACK);
         StdDraw.text(96, 12, "heuristic: " + pf.getHeuristic());
-        if(pf.foundPath()) StdDraw.text(256, 12, "path: " + pf.getPathCost());
+        float bound = pf.getSuboptimalityBound();
+        if(pf.isComputing())    StdDraw.text(256, 12, "searching...");
+        else if(pf.foundPath() && !Float.isNaN(bound)) StdDraw.text(256, 12, "path: " + pf.getPathCost() + " (<= " + bound + "x optimal)");
+        else if(pf.foundPath()) StdDraw.text(256, 12, "path: " + pf.getPathCost());
         else               StdDraw.text(256, 12, "no path found");
         StdDraw.text(512-96, 12, "searched: " + pf.getSearchSize() + " (" + (int)(100.0f * pf.getSearchSize() / (N*N)) + "%)");
     }
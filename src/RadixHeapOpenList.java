@@ -0,0 +1,115 @@
+import java.util.NoSuchElementException;
+
+/**
+ * RadixHeapOpenList is a radix heap for monotone searches (Dijkstra, or A*
+ * whose extracted keys never decrease).  Non-negative floats order the same
+ * way as their raw int bits, so a key is placed in the bucket given by the
+ * highest bit in which it differs from the last extracted minimum.  Each
+ * entry moves to a lower bucket at most 32 times, and delMin never compares
+ * keys outside of the one bucket being redistributed.
+ *
+ * A smaller key on a queued cell leaves a stale entry behind that is skipped
+ * when reached.  Inserting a key below the last extracted minimum is an error.
+ */
+public class RadixHeapOpenList implements OpenList {
+    private static final int BUCKETS = 33;
+
+    private final int[][] cells = new int[BUCKETS][];
+    private final int[][] keys = new int[BUCKETS][];
+    private final int[] count = new int[BUCKETS];
+    private final int[] current;      // key bits of the live entry of a queued cell
+    private final boolean[] queued;
+    private int last = 0;             // key bits of the last extracted minimum
+    private int size = 0;
+
+    public RadixHeapOpenList(int capacity) {
+        current = new int[capacity];
+        queued = new boolean[capacity];
+        for(int b = 0; b < BUCKETS; b++) {
+            cells[b] = new int[16];
+            keys[b] = new int[16];
+        }
+    }
+
+    private int bucket(int bits) {
+        if(bits == last) return 0;
+        return 32 - Integer.numberOfLeadingZeros(bits ^ last);
+    }
+
+    private void push(int b, int cell, int bits) {
+        if(count[b] == cells[b].length) {
+            cells[b] = java.util.Arrays.copyOf(cells[b], 2 * count[b]);
+            keys[b] = java.util.Arrays.copyOf(keys[b], 2 * count[b]);
+        }
+        cells[b][count[b]] = cell;
+        keys[b][count[b]] = bits;
+        count[b]++;
+    }
+
+    private boolean isLive(int cell, int bits) {
+        return queued[cell] && current[cell] == bits;
+    }
+
+    public void insertOrUpdate(int cell, float key) {
+        if(!(key >= 0)) throw new IllegalArgumentException("keys must be non-negative");
+        int bits = Float.floatToRawIntBits(key);
+        if(bits < last) throw new IllegalArgumentException("key is below the last extracted minimum; the search is not monotone");
+        if(queued[cell]) {
+            if(current[cell] == bits) return;
+        } else {
+            queued[cell] = true;
+            size++;
+        }
+        current[cell] = bits;
+        push(bucket(bits), cell, bits);
+    }
+
+    public int delMin() {
+        if(size == 0) throw new NoSuchElementException("open list is empty");
+        while(true) {
+            if(count[0] == 0) redistribute();
+            int k = --count[0];
+            int cell = cells[0][k];
+            if(!isLive(cell, keys[0][k])) continue;
+            queued[cell] = false;
+            size--;
+            return cell;
+        }
+    }
+
+    // moves the smallest non-empty bucket down so that bucket 0 holds its minimum
+    private void redistribute() {
+        for(int b = 1; b < BUCKETS; b++) {
+            if(count[b] == 0) continue;
+            int min = Integer.MAX_VALUE;
+            boolean any = false;
+            for(int k = 0; k < count[b]; k++) {
+                if(!isLive(cells[b][k], keys[b][k])) continue;
+                any = true;
+                if(keys[b][k] < min) min = keys[b][k];
+            }
+            int n = count[b];
+            count[b] = 0;
+            if(!any) continue;
+            last = min;
+            int[] cs = cells[b], ks = keys[b];
+            for(int k = 0; k < n; k++) {
+                if(!isLive(cs[k], ks[k])) continue;
+                push(bucket(ks[k]), cs[k], ks[k]);
+            }
+            return;
+        }
+    }
+
+    public boolean isEmpty() { return size == 0; }
+    public int size() { return size; }
+
+    public void clear() {
+        for(int b = 0; b < BUCKETS; b++) {
+            for(int k = 0; k < count[b]; k++) queued[cells[b][k]] = false;
+            count[b] = 0;
+        }
+        last = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,109 @@
+import java.util.Arrays;
+
+/**
+ * RunLengthPath is a 4-connected path stored as runs: from the start cell,
+ * each run takes length steps in one direction (an index into
+ * Terrain.DIR_I/DIR_J), every step costing the same.  The straight, flat
+ * stretches that make up most long paths become one run each, so the
+ * encoding is a small fraction of a PackedPath's size.  It is lossless:
+ * toPackedPath gives back the same cells with the same costs.
+ */
+public final class RunLengthPath {
+    private final int N;
+    private final int start;          // first cell, -1 for the empty path
+    private final byte[] dirs;
+    private final int[] lengths;
+    private final float[] stepCosts;  // cost of each step of a run
+    private final int size;
+    private final float totalCost;
+
+    private RunLengthPath(int N, int start, byte[] dirs, int[] lengths, float[] stepCosts, int size, float totalCost) {
+        this.N = N;
+        this.start = start;
+        this.dirs = dirs;
+        this.lengths = lengths;
+        this.stepCosts = stepCosts;
+        this.size = size;
+        this.totalCost = totalCost;
+    }
+
+    // encodes path over terrain; consecutive cells must be neighbors
+    public static RunLengthPath of(Terrain terrain, PackedPath path) {
+        int N = terrain.getN();
+        int n = path.size();
+        if(n == 0) return new RunLengthPath(N, -1, new byte[0], new int[0], new float[0], 0, 0);
+        byte[] dirs = new byte[n - 1];
+        int[] lengths = new int[n - 1];
+        float[] stepCosts = new float[n - 1];
+        int runs = 0;
+        for(int k = 1; k < n; k++) {
+            int i0 = path.getI(k-1), j0 = path.getJ(k-1), i1 = path.getI(k), j1 = path.getJ(k);
+            int d = direction(i1 - i0, j1 - j0);
+            if(d < 0) throw new IllegalArgumentException("cells " + (k-1) + " and " + k + " of the path are not neighbors");
+            float cost = terrain.computeTravelCost(i0, j0, i1, j1);
+            if(runs > 0 && dirs[runs-1] == d && stepCosts[runs-1] == cost) {
+                lengths[runs-1]++;
+                continue;
+            }
+            dirs[runs] = (byte) d;
+            lengths[runs] = 1;
+            stepCosts[runs] = cost;
+            runs++;
+        }
+        return new RunLengthPath(N, path.getCell(0), Arrays.copyOf(dirs, runs),
+                Arrays.copyOf(lengths, runs), Arrays.copyOf(stepCosts, runs), n, path.getTotalCost());
+    }
+
+    private static int direction(int di, int dj) {
+        for(int d = 0; d < 4; d++) {
+            if(Terrain.DIR_I[d] == di && Terrain.DIR_J[d] == dj) return d;
+        }
+        return -1;
+    }
+
+    // number of cells, as in the PackedPath
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public float getTotalCost() { return totalCost; }
+
+    public int getStartCell() { return start; }
+    public int getRunCount() { return dirs.length; }
+    public int getDirection(int r) { return dirs[r]; }
+    public int getLength(int r) { return lengths[r]; }
+    public float getStepCost(int r) { return stepCosts[r]; }
+
+    // the start cell and the last cell of every run
+    public int[] getRunEnds() {
+        if(size == 0) return new int[0];
+        int[] ends = new int[dirs.length + 1];
+        int i = start % N, j = start / N;
+        ends[0] = start;
+        for(int r = 0; r < dirs.length; r++) {
+            i += Terrain.DIR_I[dirs[r]] * lengths[r];
+            j += Terrain.DIR_J[dirs[r]] * lengths[r];
+            ends[r + 1] = i + j * N;
+        }
+        return ends;
+    }
+
+    // every cell again, with the costs terrain gives them (the original ones if it is unchanged)
+    public PackedPath toPackedPath(Terrain terrain) {
+        if(terrain.getN() != N) throw new IllegalArgumentException("the path belongs to a terrain of another size");
+        int[] cells = new int[size];
+        if(size == 0) return PackedPath.adopt(terrain, cells);
+        int i = start % N, j = start / N, k = 0;
+        cells[k++] = start;
+        for(int r = 0; r < dirs.length; r++) {
+            for(int s = 0; s < lengths[r]; s++) {
+                i += Terrain.DIR_I[dirs[r]];
+                j += Terrain.DIR_J[dirs[r]];
+                cells[k++] = i + j * N;
+            }
+        }
+        return PackedPath.adopt(terrain, cells);
+    }
+
+    public String toString() {
+        return size + " cells in " + dirs.length + " runs, cost " + totalCost;
+    }
+}
@@ -0,0 +1,67 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * SearchEvent is a Java Flight Recorder event for one path query, carrying
+ * its SearchMetrics.  Register SearchEvent.LISTENER on a Pathfinder and
+ * record with, for example,
+ *
+ *   java -XX:StartFlightRecording=filename=search.jfr ...
+ *   jfr print --events pathfinder.Search search.jfr
+ *
+ * The event is committed when the query ends, so its own duration is
+ * meaningless; searchTime and pathTime hold the phase times.  When the
+ * recording does not include the event, the listener only allocates the
+ * event object.
+ */
+@Name("pathfinder.Search")
+@Label("Path Search")
+@Category("Pathfinder")
+@Description("One Pathfinder.computePath query")
+public class SearchEvent extends Event {
+    public static final SearchListener LISTENER = SearchEvent::emit;
+
+    @Label("Mode") String mode;
+    @Label("Cached") boolean cached;
+    @Label("Start") String start;
+    @Label("End") String end;
+    @Label("Heuristic") float heuristic;
+    @Label("Found") boolean found;
+    @Label("Path Cost") float pathCost;
+    @Label("Search Size") int searchSize;
+    @Label("Pushes") long pushes;
+    @Label("Pops") long pops;
+    @Label("Peak Open Size") long peakOpenSize;
+    @Label("Re-expansions") long reExpansions;
+    @Label("Heuristic Evaluations") long heuristicEvaluations;
+    @Label("Search Time") @Timespan long searchTime;
+    @Label("Path Time") @Timespan long pathTime;
+    @Label("Allocated") @DataAmount long allocated;
+
+    static void emit(SearchMetrics m) {
+        SearchEvent e = new SearchEvent();
+        if(!e.isEnabled()) return;
+        e.mode = m.getMode().name();
+        e.cached = m.isCached();
+        e.start = m.getStart().toString();
+        e.end = m.getEnd().toString();
+        e.heuristic = m.getHeuristic();
+        e.found = m.foundPath();
+        e.pathCost = m.getPathCost();
+        e.searchSize = m.getSearchSize();
+        e.pushes = m.getPushes();
+        e.pops = m.getPops();
+        e.peakOpenSize = m.getPeakOpenSize();
+        e.reExpansions = m.getReExpansions();
+        e.heuristicEvaluations = m.getHeuristicEvaluations();
+        e.searchTime = m.getSearchNanos();
+        e.pathTime = m.getPathNanos();
+        e.allocated = m.getAllocatedBytes();
+        e.commit();
+    }
+}
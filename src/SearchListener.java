@@ -0,0 +1,9 @@
+/**
+ * SearchListener is told about every path query a Pathfinder answers, with
+ * the query's SearchMetrics.  Pathfinder only measures anything while at
+ * least one listener is registered.  Listeners run on the querying thread,
+ * after the query, so they should return quickly.
+ */
+public interface SearchListener {
+    void searchFinished(SearchMetrics metrics);
+}
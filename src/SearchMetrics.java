@@ -0,0 +1,79 @@
+/**
+ * SearchMetrics describes one path query answered by a Pathfinder: what was
+ * asked, what was found, how the open list was used, and where the time and
+ * memory went.  The search phase is begin plus step; the path phase is
+ * extracting and packing the path.  allocatedBytes covers both, on the
+ * querying thread, and is -1 where the JVM cannot measure it.
+ *
+ * The open list counts (pushes, pops, peak size, re-expansions) are
+ * counted by wrapping the ASTAR mode's open list, for computePath and
+ * stepped queries alike.  BIDIRECTIONAL, ANYTIME and INCREMENTAL count
+ * their own queues (see GridSearch), the others report -1.  A push is an
+ * insert or a key update; GridAStar evaluates the heuristic once per push,
+ * so for a nonzero heuristic that is also the number of heuristic
+ * evaluations (0 for heuristic 0, -1 when unknown).  For stepped queries
+ * the times and allocations are summed over beginPath and every step.
+ * Queries answered through a PathCache (isCached) report no counts and
+ * no path phase.
+ */
+public final class SearchMetrics {
+    private final Pathfinder.SearchMode mode;
+    private final boolean cached;
+    private final Coord start, end;
+    private final float heuristic;
+    private final boolean found;
+    private final float pathCost;
+    private final int searchSize;
+    private final long pushes, pops, peakOpenSize, reExpansions, heuristicEvaluations;
+    private final long searchNanos, pathNanos, allocatedBytes;
+
+    SearchMetrics(Pathfinder.SearchMode mode, boolean cached, Coord start, Coord end, float heuristic,
+                  boolean found, float pathCost, int searchSize,
+                  long pushes, long pops, long peakOpenSize, long reExpansions, long heuristicEvaluations,
+                  long searchNanos, long pathNanos, long allocatedBytes) {
+        this.mode = mode;
+        this.cached = cached;
+        this.start = start;
+        this.end = end;
+        this.heuristic = heuristic;
+        this.found = found;
+        this.pathCost = pathCost;
+        this.searchSize = searchSize;
+        this.pushes = pushes;
+        this.pops = pops;
+        this.peakOpenSize = peakOpenSize;
+        this.reExpansions = reExpansions;
+        this.heuristicEvaluations = heuristicEvaluations;
+        this.searchNanos = searchNanos;
+        this.pathNanos = pathNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public Pathfinder.SearchMode getMode() { return mode; }
+    public boolean isCached() { return cached; }
+    public Coord getStart() { return start; }
+    public Coord getEnd() { return end; }
+    public float getHeuristic() { return heuristic; }
+    public boolean foundPath() { return found; }
+    public float getPathCost() { return pathCost; }
+    public int getSearchSize() { return searchSize; }
+
+    public long getPushes() { return pushes; }
+    public long getPops() { return pops; }
+    public long getPeakOpenSize() { return peakOpenSize; }
+    public long getReExpansions() { return reExpansions; }
+    public long getHeuristicEvaluations() { return heuristicEvaluations; }
+
+    public long getSearchNanos() { return searchNanos; }
+    public long getPathNanos() { return pathNanos; }
+    public long getAllocatedBytes() { return allocatedBytes; }
+
+    public String toString() {
+        return mode + (cached ? " (cached) " : " ") + start + "->" + end + " h=" + heuristic
+                + (found ? " cost " + pathCost : " no path") + ", searched " + searchSize
+                + ", pushes " + pushes + ", pops " + pops + ", peak open " + peakOpenSize
+                + ", re-expanded " + reExpansions + ", heuristic evals " + heuristicEvaluations
+                + String.format(", search %.3f ms, path %.3f ms", searchNanos / 1e6, pathNanos / 1e6)
+                + ", allocated " + allocatedBytes + " B";
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * SearchWorkspace holds the per-cell arrays a grid search needs (g-costs,
+ * parent links, visited marks and the open list) as flat primitive arrays
+ * indexed by cell = i + j * N.  A workspace is reused across queries: instead
+ * of clearing the arrays, each query bumps a stamp, and a cell only counts as
+ * generated or closed if its mark carries the current stamp.
+ */
+public class SearchWorkspace {
+    private final int N;
+    private final float[] g;
+    private final int[] parent;
+    private final int[] mark;       // stamp = generated, stamp+1 = closed
+    private CellMinHeap binaryHeap;
+    private RadixHeapOpenList radixHeap;
+    private BucketOpenList bucketQueue;
+    private OpenList open;
+    private int stamp = 0;
+    private int generated;
+    private int minI, minJ, maxI, maxJ;     // bounding box of the generated cells
+
+    public SearchWorkspace(int N) {
+        this.N = N;
+        g = new float[N*N];
+        parent = new int[N*N];
+        mark = new int[N*N];
+        open = binaryHeap = new CellMinHeap(N*N);
+    }
+
+    public int getN() { return N; }
+
+    public int cell(int i, int j) { return i + j * N; }
+    public int cellI(int cell) { return cell % N; }
+    public int cellJ(int cell) { return cell / N; }
+
+    // starts a new query; all cells become unvisited in O(1)
+    public void begin() {
+        open.clear();
+        generated = 0;
+        minI = minJ = Integer.MAX_VALUE;
+        maxI = maxJ = -1;
+        stamp += 2;
+        if(stamp >= Integer.MAX_VALUE - 2) {
+            java.util.Arrays.fill(mark, 0);
+            stamp = 2;
+        }
+    }
+
+    public OpenList open() { return open; }
+
+    // the following select the open list used by the next query
+    public void useBinaryHeap() {
+        if(binaryHeap == null) binaryHeap = new CellMinHeap(N*N);
+        switchTo(binaryHeap);
+    }
+    public void useRadixHeap() {
+        if(radixHeap == null) radixHeap = new RadixHeapOpenList(N*N);
+        switchTo(radixHeap);
+    }
+    public void useBucketQueue(float width, int buckets) {
+        if(bucketQueue == null || bucketQueue.getWidth() != width || bucketQueue.getBuckets() != buckets)
+            bucketQueue = new BucketOpenList(N*N, width, buckets);
+        switchTo(bucketQueue);
+    }
+    public void useOpenList(OpenList list) {
+        if(list == null) throw new IllegalArgumentException("open list is null");
+        switchTo(list);
+    }
+    private void switchTo(OpenList list) {
+        if(list == open) return;
+        open.clear();
+        open = list;
+    }
+
+    public boolean isGenerated(int cell) { return mark[cell] >= stamp; }
+    public boolean isClosed(int cell) { return mark[cell] == stamp + 1; }
+
+    public void close(int cell) { mark[cell] = stamp + 1; }
+
+    // records cell as reached with cost g from parent (parent is -1 for the start)
+    public void generate(int cell, float cost, int from) {
+        if(mark[cell] < stamp) {
+            mark[cell] = stamp;
+            generated++;
+            int i = cell % N, j = cell / N;
+            if(i < minI) minI = i;
+            if(i > maxI) maxI = i;
+            if(j < minJ) minJ = j;
+            if(j > maxJ) maxJ = j;
+        }
+        g[cell] = cost;
+        parent[cell] = from;
+    }
+
+    public float getG(int cell) { return g[cell]; }
+    public int getParent(int cell) { return parent[cell]; }
+
+    // number of distinct cells generated in this query
+    public int getGenerated() { return generated; }
+
+    // bounding box of the cells generated in this query (empty before the first generate)
+    public int getMinI() { return minI; }
+    public int getMinJ() { return minJ; }
+    public int getMaxI() { return maxI; }
+    public int getMaxJ() { return maxJ; }
+}
@@ -0,0 +1,20 @@
+/**
+ * ShortHeightStore keeps heights in one flat short[], for maps with
+ * 16-bit heights.  It also holds the slightly out-of-range values the
+ * fractal generator produces before clampHeights.
+ */
+public class ShortHeightStore extends HeightStore {
+    private final short[] heights;
+
+    public ShortHeightStore(int N, Layout layout) {
+        super(N, layout);
+        heights = new short[capacity()];
+    }
+
+    public int get(int i, int j) { return heights[index(i, j)]; }
+    public void set(int i, int j, int h) { heights[index(i, j)] = (short) h; }
+
+    public int getMinHeight() { return Short.MIN_VALUE; }
+    public int getMaxHeight() { return Short.MAX_VALUE; }
+    public int getBitDepth() { return 16; }
+}
@@ -1,43 +1,142 @@
 import java.lang.IndexOutOfBoundsException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
 
 /**
  * Terrain stores elevations for map and computes distance and
- * cost in traversing the terrain.
+ * cost in traversing the terrain.  Heights live in a HeightStore, which may
+ * be a compact byte or short array in a cache-friendly layout.
+ *
+ * Terrain can also keep a table of precomputed travel costs, one float per
+ * cell per neighbor direction, so searches can cost an edge with a single
+ * array load.  The table is built in parallel on first use; setHeight only
+ * marks the cell dirty, and the dirty rectangles are recomputed the next
+ * time the table is requested.  Up to MAX_DIRTY separate rectangles are
+ * kept, so strokes far apart do not recompute everything between them;
+ * rectangles that touch are merged, and once they cover half the map the
+ * whole table is rebuilt instead.  Marking and refreshing take the
+ * Terrain's lock, so an edit made while another thread refreshes the table
+ * is refreshed by the next request.  Writing into the array passed to
+ * Terrain(int[][]) directly bypasses this and leaves the table stale.
+ *
+ * Registered TerrainListeners are told about every cell whose height
+ * setHeight actually changes, after the version has been bumped.  Bulk
+ * writers (such as FractalGenerator) write into the HeightStore directly
+ * and then report the whole window at once with heightsChanged.
+ *
+ * A paged HeightStore (a tiled .ttmap file, see TiledTerrainFile) holds
+ * maps larger than the heap.  The edge cost table, 16 bytes per cell, starts
+ * disabled for it, and the searches cost edges from the heights instead.
  */
 
 public class Terrain {
+    // neighbor directions used by the edge cost table and the grid searches
+    public static final int[] DIR_I = { 0, -1, 0, 1 };
+    public static final int[] DIR_J = { -1, 0, 1, 0 };
+    public static final int[] DIR_OPPOSITE = { 2, 3, 0, 1 };
+
     private int N;
-    private int[][] heights;
+    private HeightStore heights;
+
+    private boolean cacheEdgeCosts = true;
+    private float[] edgeCosts;        // edgeCosts[(i + j*N)*4 + d], +inf off the map
+    private static final int MAX_DIRTY = 8;           // dirty rectangles kept apart
+    private final int[] dirty = new int[4 * MAX_DIRTY];  // i0, j0, i1, j1 of each
+    private int dirtyCount = 0;
+    private final CopyOnWriteArrayList<TerrainListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile long version = 0;  // bumped by every height change
 
     public Terrain(int N) {
-        this.N = N;
-        this.heights = new int[N][N];
+        this(HeightStore.create(N, HeightStore.Format.INT, HeightStore.Layout.ROW_MAJOR));
     }
 
     public Terrain(int[][] heights) {
-        this.N = heights.length;
+        this(new ArrayHeightStore(heights));
+    }
+
+    // a paged store starts with the edge cost table off, as it would outgrow the heights
+    public Terrain(HeightStore heights) {
+        this.N = heights.getN();
         this.heights = heights;
+        this.cacheEdgeCosts = !heights.isPaged();
     }
 
+    // binary .tmap files (see TerrainFile) are mapped read-only instead of parsed,
+    // and tiled .ttmap files (see TiledTerrainFile) are paged in read-only
     public Terrain(String emapfile) {
+        if(TerrainFile.isTerrainFile(emapfile)) {
+            this.heights = TerrainFile.map(emapfile, false);
+            this.N = heights.getN();
+        } else if(TiledTerrainFile.isTiledTerrainFile(emapfile)) {
+            this.heights = TiledTerrainFile.open(emapfile);
+            this.N = heights.getN();
+            this.cacheEdgeCosts = false;
+        } else {
+            this.N = load(emapfile, HeightStore.Format.INT, HeightStore.Layout.ROW_MAJOR);
+        }
+    }
+
+    // loads an emap or .tmap into heap storage; BYTE requires all heights in [0,255]
+    public Terrain(String emapfile, HeightStore.Format format, HeightStore.Layout layout) {
+        this.N = load(emapfile, format, layout);
+    }
+
+    private int load(String emapfile, HeightStore.Format format, HeightStore.Layout layout) {
+        if(TerrainFile.isTerrainFile(emapfile)) {
+            copy(TerrainFile.map(emapfile, false), format, layout);
+            return heights.getN();
+        }
+        if(TiledTerrainFile.isTiledTerrainFile(emapfile)) {
+            try(PagedHeightStore paged = TiledTerrainFile.open(emapfile)) {
+                copy(paged, format, layout);
+            }
+            return heights.getN();
+        }
         In in = new In(emapfile);
-        this.N = in.readInt();
-        this.heights = new int[N][N];
+        int N = in.readInt();
+        this.heights = HeightStore.create(N, format, layout);
+        for (int j = 0; j < N; j++) {
+            for (int i = 0; i < N; i++) {
+                store(i, j, in.readInt());
+            }
+        }
+        return N;
+    }
+
+    private void copy(HeightStore source, HeightStore.Format format, HeightStore.Layout layout) {
+        int N = source.getN();
+        this.heights = HeightStore.create(N, format, layout);
         for (int j = 0; j < N; j++) {
             for (int i = 0; i < N; i++) {
-                this.heights[i][j] = in.readInt();
+                store(i, j, source.get(i, j));
             }
         }
     }
 
+    private void store(int i, int j, int h) {
+        if(!heights.canHold(h))
+            throw new IllegalArgumentException("height " + h + " at (" + i + "," + j + ") does not fit in " + heights.getBitDepth() + "-bit storage");
+        heights.set(i, j, h);
+    }
+
     public int getN() {
         return N;
     }
 
+    public HeightStore getHeightStore() {
+        return heights;
+    }
+
     public void setHeight(int i, int j, int h) {
         if(i < 0 || j < 0 || i >= N || j >= N)
             throw new IndexOutOfBoundsException("i and j must be in [0,N)");
-        heights[i][j] = h;
+        if(!heights.canHold(h))
+            throw new IllegalArgumentException("height " + h + " does not fit in " + heights.getBitDepth() + "-bit storage");
+        if(heights.get(i, j) == h) return;
+        heights.set(i, j, h);
+        version++;
+        markDirty(i, j, i, j);
+        for(TerrainListener l : listeners) l.heightChanged(i, j);
     }
     public void setHeight(int i, int j, float h) {
         setHeight(i, j, (int) h);
@@ -49,10 +148,30 @@ public class Terrain {
         setHeight(loc.getI(), loc.getJ(), h);
     }
 
+    // reports that heights in the window i0..i1, j0..j1 were written straight into the HeightStore
+    public void heightsChanged(int i0, int j0, int i1, int j1) {
+        if(i0 < 0 || j0 < 0 || i1 >= N || j1 >= N || i0 > i1 || j0 > j1)
+            throw new IndexOutOfBoundsException("the window must lie in [0,N) and not be empty");
+        version++;
+        markDirty(i0, j0, i1, j1);
+        for(TerrainListener l : listeners) l.heightsChanged(i0, j0, i1, j1);
+    }
+
+    // modification count: changes whenever setHeight changes a height
+    public long getVersion() { return version; }
+
+    public void addListener(TerrainListener l) {
+        if(l == null) throw new IllegalArgumentException("listener is null");
+        listeners.add(l);
+    }
+    public void removeListener(TerrainListener l) {
+        listeners.remove(l);
+    }
+
     public int getHeight(int i, int j) {
         if(i < 0 || j < 0 || i >= N || j >= N)
             throw new IndexOutOfBoundsException("i and j must be in [0,N)");
-        return heights[i][j];
+        return heights.get(i, j);
     }
     public int getHeight(Coord loc) {
         return getHeight(loc.getI(), loc.getJ());
@@ -76,6 +195,7 @@ public class Terrain {
         return computeTravelCost(c0.getI(), c0.getJ(), c1.getI(), c1.getJ());
     }
     public float computeTravelCost(Iterable<Coord> cs) {
+        if(cs instanceof PackedPath) return computeTravelCost((PackedPath) cs);
         Coord c0 = null;
         float cost = 0.0f;
         for(Coord c1 : cs) {
@@ -84,4 +204,120 @@ public class Terrain {
         }
         return cost;
     }
+    // same sum as above, straight from the packed cells
+    public float computeTravelCost(PackedPath path) {
+        float cost = 0.0f;
+        for(int k = 1; k < path.size(); k++) {
+            cost += computeTravelCost(path.getI(k-1), path.getJ(k-1), path.getI(k), path.getJ(k));
+        }
+        return cost;
+    }
+
+    // enables or disables the precomputed edge cost table (enabled by default)
+    public synchronized void setEdgeCostCaching(boolean enabled) {
+        cacheEdgeCosts = enabled;
+        if(!enabled) {
+            edgeCosts = null;
+            dirtyCount = 0;
+        }
+    }
+
+    // returns the edge cost table, building or refreshing it as needed, or
+    // null if caching is disabled.  entry (i + j*N)*4 + d holds the travel
+    // cost from (i,j) to (i + DIR_I[d], j + DIR_J[d]).
+    public synchronized float[] getEdgeCostTable() {
+        if(!cacheEdgeCosts) return null;
+        if(edgeCosts == null) {
+            edgeCosts = new float[N*N*4];
+            computeEdgeCosts(0, 0, N-1, N-1);
+        } else {
+            // edges into a dirty rectangle start one cell outside of it
+            for(int k = 0; k < dirtyCount; k++) {
+                int b = 4*k;
+                computeEdgeCosts(Math.max(0, dirty[b]-1), Math.max(0, dirty[b+1]-1), Math.min(N-1, dirty[b+2]+1), Math.min(N-1, dirty[b+3]+1));
+            }
+        }
+        dirtyCount = 0;
+        return edgeCosts;
+    }
+
+    // adds the window to the dirty rectangles, merging it with those it touches (their edge
+    // rings overlap); with no room left it joins the rectangle it enlarges least
+    private synchronized void markDirty(int i0, int j0, int i1, int j1) {
+        if(edgeCosts == null) return;
+        for(int k = 0; k < dirtyCount; k++) {
+            int b = 4*k;
+            if(i0 >= dirty[b] && j0 >= dirty[b+1] && i1 <= dirty[b+2] && j1 <= dirty[b+3]) return;
+        }
+        for(int k = 0; k < dirtyCount; ) {
+            int b = 4*k;
+            if(i0 > dirty[b+2]+2 || dirty[b] > i1+2 || j0 > dirty[b+3]+2 || dirty[b+1] > j1+2) {
+                k++;
+                continue;
+            }
+            // the union may touch rectangles already passed over
+            i0 = Math.min(i0, dirty[b]);
+            j0 = Math.min(j0, dirty[b+1]);
+            i1 = Math.max(i1, dirty[b+2]);
+            j1 = Math.max(j1, dirty[b+3]);
+            removeDirty(k);
+            k = 0;
+        }
+        if(dirtyCount == MAX_DIRTY) {
+            int best = 0;
+            long least = Long.MAX_VALUE;
+            for(int k = 0; k < dirtyCount; k++) {
+                int b = 4*k;
+                long grown = area(Math.min(i0, dirty[b]), Math.min(j0, dirty[b+1]), Math.max(i1, dirty[b+2]), Math.max(j1, dirty[b+3]))
+                        - area(dirty[b], dirty[b+1], dirty[b+2], dirty[b+3]);
+                if(grown < least) {
+                    least = grown;
+                    best = k;
+                }
+            }
+            int b = 4*best;
+            int ui0 = Math.min(i0, dirty[b]), uj0 = Math.min(j0, dirty[b+1]), ui1 = Math.max(i1, dirty[b+2]), uj1 = Math.max(j1, dirty[b+3]);
+            removeDirty(best);
+            markDirty(ui0, uj0, ui1, uj1);
+            return;
+        }
+        int b = 4*dirtyCount++;
+        dirty[b] = i0;
+        dirty[b+1] = j0;
+        dirty[b+2] = i1;
+        dirty[b+3] = j1;
+
+        // covering half the map, one full rebuild beats the separate pieces
+        long covered = 0;
+        for(int k = 0; k < dirtyCount; k++) covered += area(dirty[4*k], dirty[4*k+1], dirty[4*k+2], dirty[4*k+3]);
+        if(2 * covered >= (long) N * N) {
+            dirtyCount = 1;
+            dirty[0] = dirty[1] = 0;
+            dirty[2] = dirty[3] = N - 1;
+        }
+    }
+
+    private void removeDirty(int k) {
+        dirtyCount--;
+        System.arraycopy(dirty, 4*dirtyCount, dirty, 4*k, 4);
+    }
+
+    private static long area(int i0, int j0, int i1, int j1) {
+        return (long) (i1 - i0 + 1) * (j1 - j0 + 1);
+    }
+
+    private void computeEdgeCosts(int i0, int j0, int i1, int j1) {
+        IntStream rows = IntStream.rangeClosed(j0, j1);
+        if((long)(i1 - i0 + 1) * (j1 - j0 + 1) >= 4096) rows = rows.parallel();
+        rows.forEach(j -> {
+            for(int i = i0; i <= i1; i++) {
+                int base = (i + j * N) * 4;
+                for(int d = 0; d < 4; d++) {
+                    int ni = i + DIR_I[d], nj = j + DIR_J[d];
+                    if(ni < 0 || nj < 0 || ni >= N || nj >= N) edgeCosts[base + d] = Float.POSITIVE_INFINITY;
+                    else edgeCosts[base + d] = computeTravelCost(i, j, ni, nj);
+                }
+            }
+        });
+    }
 }
@@ -0,0 +1,153 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * TerrainFile reads and writes the binary terrain format (.tmap).  All
+ * values are little-endian:
+ *
+ * offset  size  field
+ * 0       4     magic "PFTM"
+ * 4       4     format version (1)
+ * 8       4     N
+ * 12      4     bits per height: 8 (unsigned), 16 or 32 (signed)
+ * 16      8     CRC32 of the height data
+ * 24      ...   N*N heights, row-major (i + j*N)
+ *
+ * open maps the file read-only, so a large map is usable without parsing it,
+ * and the OS page cache is shared between processes.
+ */
+public class TerrainFile {
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 24;
+    private static final int MAGIC = 'P' | ('F' << 8) | ('T' << 16) | ('M' << 24);
+
+    private TerrainFile() { }
+
+    // resolves a file name the way In does: a file path first, then the classpath
+    static Path resolve(String name) {
+        File file = new File(name);
+        if(file.exists()) return file.toPath();
+        URL url = TerrainFile.class.getResource(name);
+        if(url == null) url = TerrainFile.class.getResource("/" + name);
+        if(url == null || !"file".equals(url.getProtocol())) return null;
+        try {
+            return Paths.get(url.toURI());
+        } catch(URISyntaxException e) {
+            return null;
+        }
+    }
+
+    // returns true if name resolves to a file starting with the .tmap magic
+    public static boolean isTerrainFile(String name) {
+        Path path = resolve(name);
+        if(path == null) return false;
+        try(FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer b = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            if(ch.read(b, 0) < 4) return false;
+            return b.getInt(0) == MAGIC;
+        } catch(IOException e) {
+            return false;
+        }
+    }
+
+    // maps the file read-only; verify also checks the CRC32 (which reads every page)
+    public static MappedHeightStore map(String name, boolean verify) {
+        Path path = resolve(name);
+        if(path == null) throw new IllegalArgumentException("could not find terrain file " + name);
+        try(FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if(size < HEADER_SIZE) throw new IllegalArgumentException(name + " is not a terrain file");
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            ch.read(header, 0);
+            if(header.getInt(0) != MAGIC) throw new IllegalArgumentException(name + " is not a terrain file");
+            int version = header.getInt(4);
+            if(version != VERSION) throw new IllegalArgumentException(name + " has unsupported version " + version);
+            int N = header.getInt(8);
+            int bits = header.getInt(12);
+            long checksum = header.getLong(16);
+            long length = (long) N * N * (bits / 8);
+            if(N < 0 || (bits != 8 && bits != 16 && bits != 32)) throw new IllegalArgumentException(name + " has a corrupt header");
+            if(HEADER_SIZE + length > size) throw new IllegalArgumentException(name + " is truncated");
+            if(length > Integer.MAX_VALUE) throw new IllegalArgumentException(name + " is too large to map in one piece");
+
+            MappedByteBuffer data = ch.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, length);
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            if(verify && checksum(data) != checksum) throw new IllegalArgumentException(name + " failed its checksum");
+            return new MappedHeightStore(N, bits, data);
+        } catch(IOException e) {
+            throw new UncheckedIOException("could not read " + name, e);
+        }
+    }
+
+    public static Terrain open(String name) {
+        return new Terrain(map(name, false));
+    }
+
+    private static long checksum(ByteBuffer data) {
+        CRC32 crc = new CRC32();
+        crc.update(data.duplicate());
+        return crc.getValue();
+    }
+
+    // writes terrain with the given bits per height; all heights must fit
+    public static void write(Terrain terrain, String filename, int bits) {
+        if(bits != 8 && bits != 16 && bits != 32) throw new IllegalArgumentException("bits must be 8, 16 or 32");
+        int N = terrain.getN();
+        long length = (long) N * N * (bits / 8);
+        if(length > Integer.MAX_VALUE) throw new IllegalArgumentException("terrain is too large for a single terrain file");
+        int min = bits == 8 ? 0 : bits == 16 ? Short.MIN_VALUE : Integer.MIN_VALUE;
+        int max = bits == 8 ? 255 : bits == 16 ? Short.MAX_VALUE : Integer.MAX_VALUE;
+
+        ByteBuffer data = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+        for(int j = 0; j < N; j++) {
+            for(int i = 0; i < N; i++) {
+                int h = terrain.getHeight(i, j);
+                if(h < min || h > max) throw new IllegalArgumentException("height " + h + " at (" + i + "," + j + ") does not fit in " + bits + " bits");
+                if(bits == 8) data.put((byte) h);
+                else if(bits == 16) data.putShort((short) h);
+                else data.putInt(h);
+            }
+        }
+        data.flip();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(N).putInt(bits).putLong(checksum(data));
+        header.flip();
+
+        Path path = Paths.get(filename);
+        try(FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while(header.hasRemaining()) ch.write(header);
+            while(data.hasRemaining()) ch.write(data);
+        } catch(IOException e) {
+            throw new UncheckedIOException("could not write " + filename, e);
+        }
+    }
+
+    // smallest bit depth that holds every height of terrain
+    public static int bitsNeeded(Terrain terrain) {
+        int N = terrain.getN();
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for(int j = 0; j < N; j++) {
+            for(int i = 0; i < N; i++) {
+                int h = terrain.getHeight(i, j);
+                if(h < min) min = h;
+                if(h > max) max = h;
+            }
+        }
+        if(min >= 0 && max <= 255) return 8;
+        if(min >= Short.MIN_VALUE && max <= Short.MAX_VALUE) return 16;
+        return 32;
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * TerrainListener is notified when a Terrain cell changes height through
+ * setHeight.  Searches that precompute data from the heights (abstract
+ * graphs, search trees, caches) register one to learn which cells went stale.
+ */
+public interface TerrainListener {
+    // called after the height at (i,j) changed
+    void heightChanged(int i, int j);
+
+    // called after any heights in the window i0..i1, j0..j1 changed, when they
+    // were written in bulk (see Terrain.heightsChanged); by default, every
+    // cell in the window is reported to heightChanged
+    default void heightsChanged(int i0, int j0, int i1, int j1) {
+        for(int j = j0; j <= j1; j++) {
+            for(int i = i0; i <= i1; i++) heightChanged(i, j);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * TerrainRaster is a Terrain drawn into a size-by-size image, each pixel
+ * showing the cell under it through a 256-entry color table (one color per
+ * height, heights outside 0..255 clamped).  It listens to the terrain and
+ * remembers the bounding box of the cells edited since the last getImage,
+ * which then repaints only the pixels over that box; frames without edits
+ * reuse the image as it is.
+ */
+public final class TerrainRaster implements TerrainListener {
+    private final Terrain terrain;
+    private final int N;
+    private final int size;
+    private final int[] colors;
+    private final BufferedImage image;
+    private final int[] pixels;
+    private final int[] cellOf;       // cell column (or row) under each pixel column (or row)
+    private final int[] firstPixel;   // first pixel column (or row) over each cell column (or row), and size
+    private int dirtyI0, dirtyJ0, dirtyI1 = -1, dirtyJ1 = -1;
+    private long repainted;
+
+    // colors holds the rgb of heights 0 to 255
+    public TerrainRaster(Terrain terrain, int size, int[] colors) {
+        if(terrain == null) throw new IllegalArgumentException("terrain is null");
+        if(size < 1) throw new IllegalArgumentException("size must be positive");
+        if(colors.length != 256) throw new IllegalArgumentException("the color table needs 256 entries");
+        this.terrain = terrain;
+        this.N = terrain.getN();
+        this.size = size;
+        this.colors = colors.clone();
+        image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        // the same mapping the per-pixel drawing used
+        cellOf = new int[size];
+        for(int p = 0; p < size; p++) cellOf[p] = (int)((float)p / (float)size * N);
+        firstPixel = new int[N + 1];
+        Arrays.fill(firstPixel, size);
+        for(int p = size - 1; p >= 0; p--) firstPixel[cellOf[p]] = p;
+        for(int c = N - 1; c >= 0; c--) firstPixel[c] = Math.min(firstPixel[c], firstPixel[c + 1]);
+        dirtyI0 = dirtyJ0 = 0;
+        dirtyI1 = dirtyJ1 = N - 1;
+        terrain.addListener(this);
+    }
+
+    // stops listening to the terrain; the raster must not be used afterwards
+    public void dispose() {
+        terrain.removeListener(this);
+    }
+
+    public Terrain getTerrain() { return terrain; }
+    public int getSize() { return size; }
+
+    // the cell column (or row) drawn at pixel column (or row) p
+    public int cellAt(int p) { return cellOf[p]; }
+
+    public synchronized void heightChanged(int i, int j) {
+        if(dirtyI1 < 0) {
+            dirtyI0 = dirtyI1 = i;
+            dirtyJ0 = dirtyJ1 = j;
+            return;
+        }
+        if(i < dirtyI0) dirtyI0 = i;
+        if(i > dirtyI1) dirtyI1 = i;
+        if(j < dirtyJ0) dirtyJ0 = j;
+        if(j > dirtyJ1) dirtyJ1 = j;
+    }
+
+    public synchronized void heightsChanged(int i0, int j0, int i1, int j1) {
+        heightChanged(i0, j0);
+        heightChanged(i1, j1);
+    }
+
+    // the image, with the pixels over cells edited since the last call repainted
+    public synchronized BufferedImage getImage() {
+        if(dirtyI1 >= 0) {
+            paint(dirtyI0, dirtyJ0, dirtyI1, dirtyJ1);
+            dirtyI1 = dirtyJ1 = -1;
+        }
+        return image;
+    }
+
+    // pixels repainted so far, a full image counting size*size
+    public synchronized long getRepaintedPixels() { return repainted; }
+
+    private void paint(int i0, int j0, int i1, int j1) {
+        int col0 = firstPixel[i0], col1 = firstPixel[i1 + 1];
+        int row0 = firstPixel[j0], row1 = firstPixel[j1 + 1];
+        for(int row = row0; row < row1; row++) {
+            int j = cellOf[row];
+            int base = row * size;
+            int last = -1, rgb = 0;
+            for(int col = col0; col < col1; col++) {
+                int i = cellOf[col];
+                if(i != last) {
+                    rgb = colors[Math.max(0, Math.min(255, terrain.getHeight(i, j)))];
+                    last = i;
+                }
+                pixels[base + col] = rgb;
+            }
+        }
+        repainted += (long) (row1 - row0) * (col1 - col0);
+    }
+}
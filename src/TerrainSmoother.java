@@ -0,0 +1,128 @@
+import java.util.stream.IntStream;
+
+/**
+ * TerrainSmoother does the work of TerrainEditor.smoothHeights: every cell
+ * of a square window moves towards the average of its (up to eight)
+ * neighbors by its effect m, computed from the heights before the call.
+ * The results are the same, bit for bit, as blending one cell at a time.
+ *
+ * The window and a one-cell ring around it are copied into an int array,
+ * so the reads are unchecked and the cells can be written as soon as they
+ * are computed.  Rows are smoothed in parallel.  The sum of the neighbors
+ * is a separable 3x3 box sum (three rows summed per column, then three
+ * columns) less the center, done in ints.  This matches the float sum
+ * exactly while every partial sum fits in a float's 24-bit mantissa; a
+ * window with taller heights sums them in float, in the original order.
+ *
+ * Smoothing the whole map writes straight into the HeightStore and reports
+ * the changed cells with one Terrain.heightsChanged; a brush window goes
+ * through setHeight, so listeners hear about each changed cell as before.
+ */
+public final class TerrainSmoother {
+    private static final int PARALLEL = 256 * 256;      // windows with fewer cells are smoothed on one thread
+    private static final int EXACT = (1 << 24) / 9;     // below this, any sum of up to 9 heights is exact in float
+
+    private TerrainSmoother() { }
+
+    // smooths the window of the given radius around (ic,jc); see TerrainEditor.smoothHeights
+    public static void smooth(Terrain terrain, int ic, int jc, int radius, boolean fallOff) {
+        final int N = terrain.getN();
+        final int i0 = Math.max(0, ic - radius), i1 = Math.min(N - 1, ic + radius);
+        final int j0 = Math.max(0, jc - radius), j1 = Math.min(N - 1, jc + radius);
+        if(i0 > i1 || j0 > j1) return;
+        final HeightStore store = terrain.getHeightStore();
+        final int w = i1 - i0 + 1, h = j1 - j0 + 1, W = w + 2;
+
+        // the window and the ring around it, 0 off the map
+        final int[] src = new int[W * (h + 2)];
+        int tallest = rows(h + 2, w).map(y -> {
+            int j = j0 - 1 + y;
+            if(j < 0 || j >= N) return 0;
+            int most = 0;
+            for(int x = 0; x < W; x++) {
+                int i = i0 - 1 + x;
+                if(i < 0 || i >= N) continue;
+                int v = store.get(i, j);
+                src[y * W + x] = v;
+                most = Math.max(most, Math.abs(v));
+            }
+            return most;
+        }).max().orElse(0);
+        final boolean exact = tallest < EXACT;
+
+        // the whole map is written in bulk; a brush window goes through setHeight afterwards
+        final boolean bulk = w == N && h == N;
+        final int[] out = bulk ? null : new int[w * h];
+        final int[] changedFrom = new int[h], changedTo = new int[h];
+
+        rows(h, w).forEach(y -> {
+            int j = j0 + y;
+            int rowsIn = 1 + (j > 0 ? 1 : 0) + (j < N-1 ? 1 : 0);
+            int[] column = exact ? new int[W] : null;
+            if(exact) {
+                int a = y * W, b = a + W, c = b + W;
+                for(int x = 0; x < W; x++) column[x] = src[a + x] + src[b + x] + src[c + x];
+            }
+            int first = w, last = -1;
+            for(int x = 0; x < w; x++) {
+                int i = i0 + x;
+                int center = src[(y + 1) * W + x + 1];
+                float s = center;
+                float m = TerrainEditor.computeEffect(i, j, ic, jc, radius, fallOff, N);
+                if(m > 0.0000001) {
+                    int c = rowsIn * (1 + (i > 0 ? 1 : 0) + (i < N-1 ? 1 : 0)) - 1;
+                    float sum = exact ? (float) (column[x] + column[x + 1] + column[x + 2] - center)
+                                      : neighborSum(src, W, x + 1, y + 1, i, j, N);
+                    s = (1-m) * center + m * sum / c;
+                }
+                int v = (int) s;
+                if(bulk) {
+                    if(v == center) continue;
+                    store.set(i, j, v);
+                    if(first == w) first = x;
+                    last = x;
+                } else {
+                    out[y * w + x] = v;
+                }
+            }
+            changedFrom[y] = first;
+            changedTo[y] = last;
+        });
+
+        if(bulk) {
+            int ci0 = w, ci1 = -1, cj0 = h, cj1 = -1;
+            for(int y = 0; y < h; y++) {
+                if(changedTo[y] < 0) continue;
+                ci0 = Math.min(ci0, changedFrom[y]);
+                ci1 = Math.max(ci1, changedTo[y]);
+                cj0 = Math.min(cj0, y);
+                cj1 = y;
+            }
+            if(ci1 >= 0) terrain.heightsChanged(i0 + ci0, j0 + cj0, i0 + ci1, j0 + cj1);
+        } else {
+            // in the order the cell-at-a-time loop set them
+            for(int x = 0; x < w; x++) {
+                for(int y = 0; y < h; y++) terrain.setHeight(i0 + x, j0 + y, out[y * w + x]);
+            }
+        }
+    }
+
+    private static IntStream rows(int count, int width) {
+        IntStream rows = IntStream.range(0, count);
+        return (long) count * width >= PARALLEL ? rows.parallel() : rows;
+    }
+
+    // the neighbors of src cell (x,y), which is map cell (i,j), summed in float in the original order
+    private static float neighborSum(int[] src, int W, int x, int y, int i, int j, int N) {
+        float h = 0;
+        if(i > 0 && j > 0)      h += src[(y-1) * W + x-1];
+        if(i < N-1 && j > 0)    h += src[(y-1) * W + x+1];
+        if(i > 0 && j < N-1)    h += src[(y+1) * W + x-1];
+        if(i < N-1 && j < N-1)  h += src[(y+1) * W + x+1];
+        if(i > 0)               h += src[y * W + x-1];
+        if(j > 0)               h += src[(y-1) * W + x];
+        if(i < N-1)             h += src[y * W + x+1];
+        if(j < N-1)             h += src[(y+1) * W + x];
+        return h;
+    }
+}
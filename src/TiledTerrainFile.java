@@ -0,0 +1,205 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * TiledTerrainFile reads and writes the tiled terrain format (.ttmap), for
+ * maps too large for the heap.  Heights are grouped into square tiles,
+ * row-major inside a tile, and the tiles follow each other row-major; tiles
+ * on the right and bottom edges are padded to full size.  All values are
+ * little-endian:
+ *
+ * offset  size  field
+ * 0       4     magic "PFTT"
+ * 4       4     format version (1)
+ * 8       4     N
+ * 12      4     bits per height: 8 (unsigned), 16 or 32 (signed)
+ * 16      4     tile side, a power of two
+ * 20      4     reserved (0)
+ * 24      ...   the tiles, tile (ti,tj) at ti + tj*ceil(N/side)
+ *
+ * open pages the file through a PagedHeightStore instead of loading it.
+ *
+ * usage: java TiledTerrainFile [-bits 8|16|32] [-tile side] file.emap|file.tmap ...
+ */
+public class TiledTerrainFile {
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 24;
+    public static final int DEFAULT_TILE_SIDE = 128;
+    public static final long DEFAULT_CACHE_BYTES = 64L << 20;   // of decoded tiles
+    private static final int MAGIC = 'P' | ('F' << 8) | ('T' << 16) | ('T' << 24);
+
+    private TiledTerrainFile() { }
+
+    // returns true if name resolves to a file starting with the .ttmap magic
+    public static boolean isTiledTerrainFile(String name) {
+        Path path = TerrainFile.resolve(name);
+        if(path == null) return false;
+        try(FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer b = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            if(ch.read(b, 0) < 4) return false;
+            return b.getInt(0) == MAGIC;
+        } catch(IOException e) {
+            return false;
+        }
+    }
+
+    // opens the file read-only with a cache of DEFAULT_CACHE_BYTES
+    public static PagedHeightStore open(String name) {
+        return open(name, 0, false);
+    }
+
+    // opens the file with room for cacheTiles tiles (0 for DEFAULT_CACHE_BYTES worth)
+    public static PagedHeightStore open(String name, int cacheTiles, boolean writable) {
+        Path path = TerrainFile.resolve(name);
+        if(path == null) throw new IllegalArgumentException("could not find terrain file " + name);
+        FileChannel ch = null;
+        try {
+            ch = writable ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                          : FileChannel.open(path, StandardOpenOption.READ);
+            long size = ch.size();
+            if(size < HEADER_SIZE) throw new IllegalArgumentException(name + " is not a tiled terrain file");
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            ch.read(header, 0);
+            if(header.getInt(0) != MAGIC) throw new IllegalArgumentException(name + " is not a tiled terrain file");
+            int version = header.getInt(4);
+            if(version != VERSION) throw new IllegalArgumentException(name + " has unsupported version " + version);
+            int N = header.getInt(8);
+            int bits = header.getInt(12);
+            int side = header.getInt(16);
+            if(N < 0 || (bits != 8 && bits != 16 && bits != 32) || side < 1 || Integer.bitCount(side) != 1)
+                throw new IllegalArgumentException(name + " has a corrupt header");
+            if(HEADER_SIZE + dataLength(N, bits, side) > size) throw new IllegalArgumentException(name + " is truncated");
+
+            if(cacheTiles <= 0) cacheTiles = (int) Math.max(1, DEFAULT_CACHE_BYTES / (4L * side * side));
+            PagedHeightStore store = new PagedHeightStore(ch, writable, N, bits, side, HEADER_SIZE, cacheTiles);
+            ch = null;
+            return store;
+        } catch(IOException e) {
+            throw new UncheckedIOException("could not read " + name, e);
+        } finally {
+            if(ch != null) {
+                try {
+                    ch.close();
+                } catch(IOException e) {
+                    // already failing
+                }
+            }
+        }
+    }
+
+    public static Terrain openTerrain(String name) {
+        return new Terrain(open(name));
+    }
+
+    // creates a file of the given size with every height 0, to be opened writable and filled in
+    public static void create(String filename, int N, int bits, int side) {
+        checkFormat(N, bits, side);
+        try(FileChannel ch = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(ch, N, bits, side);
+            long length = dataLength(N, bits, side);
+            if(length > 0) ch.write(ByteBuffer.allocate(1), HEADER_SIZE + length - 1);
+        } catch(IOException e) {
+            throw new UncheckedIOException("could not write " + filename, e);
+        }
+    }
+
+    // writes terrain tile by tile with the given bits per height; all heights must fit
+    public static void write(Terrain terrain, String filename, int bits, int side) {
+        int N = terrain.getN();
+        checkFormat(N, bits, side);
+        int min = bits == 8 ? 0 : bits == 16 ? Short.MIN_VALUE : Integer.MIN_VALUE;
+        int max = bits == 8 ? 255 : bits == 16 ? Short.MAX_VALUE : Integer.MAX_VALUE;
+        int tilesPerRow = (N + side - 1) / side;
+        ByteBuffer tile = ByteBuffer.allocate(side * side * (bits / 8)).order(ByteOrder.LITTLE_ENDIAN);
+
+        try(FileChannel ch = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(ch, N, bits, side);
+            for(int tj = 0; tj < tilesPerRow; tj++) {
+                for(int ti = 0; ti < tilesPerRow; ti++) {
+                    tile.clear();
+                    for(int y = 0; y < side; y++) {
+                        for(int x = 0; x < side; x++) {
+                            int i = ti * side + x, j = tj * side + y;
+                            int h = i < N && j < N ? terrain.getHeight(i, j) : 0;
+                            if(h < min || h > max) throw new IllegalArgumentException("height " + h + " at (" + i + "," + j + ") does not fit in " + bits + " bits");
+                            if(bits == 8) tile.put((byte) h);
+                            else if(bits == 16) tile.putShort((short) h);
+                            else tile.putInt(h);
+                        }
+                    }
+                    tile.flip();
+                    long position = HEADER_SIZE + ((long) tj * tilesPerRow + ti) * tile.capacity();
+                    while(tile.hasRemaining()) ch.write(tile, position + tile.position());
+                }
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException("could not write " + filename, e);
+        }
+    }
+
+    private static void checkFormat(int N, int bits, int side) {
+        if(N < 0) throw new IllegalArgumentException("N must be non-negative");
+        if(bits != 8 && bits != 16 && bits != 32) throw new IllegalArgumentException("bits must be 8, 16 or 32");
+        if(side < 1 || Integer.bitCount(side) != 1) throw new IllegalArgumentException("the tile side must be a power of two");
+        if((long) side * side * (bits / 8) > Integer.MAX_VALUE) throw new IllegalArgumentException("tiles of side " + side + " are too large");
+    }
+
+    private static long dataLength(int N, int bits, int side) {
+        long tilesPerRow = (N + (long) side - 1) / side;
+        return tilesPerRow * tilesPerRow * side * side * (bits / 8);
+    }
+
+    private static void writeHeader(FileChannel ch, int N, int bits, int side) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(N).putInt(bits).putInt(side).putInt(0);
+        header.flip();
+        while(header.hasRemaining()) ch.write(header, header.position());
+    }
+
+    // converts .emap and .tmap files to .ttmap next to them, then reads each back through a small cache
+    public static void main(String[] args) {
+        int bits = 0, side = DEFAULT_TILE_SIDE;
+        int k = 0;
+        while(k + 1 < args.length && args[k].startsWith("-")) {
+            if(args[k].equals("-bits")) bits = Integer.parseInt(args[k + 1]);
+            else if(args[k].equals("-tile")) side = Integer.parseInt(args[k + 1]);
+            else break;
+            k += 2;
+        }
+        if(k >= args.length) {
+            StdOut.println("usage: java TiledTerrainFile [-bits 8|16|32] [-tile side] file.emap|file.tmap ...");
+            return;
+        }
+        for(; k < args.length; k++) {
+            String name = args[k];
+            int dot = name.lastIndexOf('.');
+            String ttmap = (dot > 0 && (name.endsWith(".emap") || name.endsWith(".tmap")) ? name.substring(0, dot) : name) + ".ttmap";
+
+            Terrain terrain = new Terrain(name);
+            int b = bits != 0 ? bits : TerrainFile.bitsNeeded(terrain);
+            Stopwatch sw = new Stopwatch();
+            write(terrain, ttmap, b, side);
+            double written = sw.elapsedTime();
+
+            // a cache of four tiles: a row-major scan misses once per tile and row of tiles
+            int N = terrain.getN();
+            sw = new Stopwatch();
+            try(PagedHeightStore paged = open(ttmap, 4, false)) {
+                for(int j = 0; j < N; j++) {
+                    for(int i = 0; i < N; i++) {
+                        if(paged.get(i, j) != terrain.getHeight(i, j))
+                            throw new IllegalStateException(ttmap + " differs from " + name + " at (" + i + "," + j + ")");
+                    }
+                }
+                StdOut.printf("%s -> %s  N=%d  %d bits  %dx%d tiles  write %.3fs  verify %.3fs%n  %s%n",
+                        name, ttmap, N, b, side, side, written, sw.elapsedTime(), paged);
+            }
+        }
+    }
+}
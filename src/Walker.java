@@ -1,27 +1,28 @@
-import java.util.Iterator;
-
 /**
  * Walker takes an Iterable of Coords and simulates an individual
- * walking along the path over the given Terrain
+ * walking along the path over the given Terrain.  The path is kept as a
+ * PackedPath, so walking it allocates nothing.
  */
 public class Walker {
     private Terrain terrain;
-    private Iterable<Coord> path;
-    private Iterator<Coord> iterator;
-    private Coord position;
+    private PackedPath path;
+    private PackedPath.Cursor cursor;
     private float currentCost;
-    private Coord previous = null;
     float runningCost = 0;
 
     // terrain: the Terrain the Walker traverses
     // path: the sequence of Coords the Walker follows
     public Walker(Terrain terrain, Iterable<Coord> path) {
+        this(terrain, PackedPath.of(terrain, path));
+    }
+
+    public Walker(Terrain terrain, PackedPath path) {
         this.terrain = terrain;
         this.path = path;
-        iterator = path.iterator();
+        cursor = path.cursor();
     }
 
-    // returns the Walker's current location
+    // returns the Walker's current location (null until the first advance)
     public Coord getLocation() {
         /*if(previous == null){
             currentCost = 0;
@@ -31,12 +32,22 @@ public class Walker {
 
         previous = this.position;
         */
-        return this.position;
+        if(cursor.index() < 0) return null;
+        return new Coord(cursor.i(), cursor.j());
+    }
+
+    // the current location without creating a Coord; only valid after the first advance
+    public int getI() { return cursor.i(); }
+    public int getJ() { return cursor.j(); }
+
+    // travel cost from the start of the path to the current location
+    public float getCostSoFar() {
+        return cursor.index() < 0 ? 0 : cursor.cost();
     }
 
     // returns true if Walker has reached the end Coord (last in path)
     public boolean doneWalking() {
-        if(iterator.hasNext()){
+        if(cursor.hasNext()){
             return false;
         }
         return true;
@@ -53,7 +64,7 @@ public class Walker {
             runningCost+= byTime;
         }
         */
-        this.position = iterator.next();
+        cursor.next();
     }
 }
 //compute travel cost to know how long it takes to go to each spot